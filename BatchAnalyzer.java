@@ -0,0 +1,278 @@
+package org.cis1200.othello;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * BatchAnalyzer searches a stream of positions on a pool of threads and
+ * writes one result line per position, in input order, so that positions
+ * from game logs can be graded by a pipeline without any user interface.
+ *
+ * Input, one position per line: the 64 squares a1 to h8 row by row (X or
+ * * for Black, O for White, - or . for empty), then after a space the
+ * player to move (X or O). Anything after that (such as the ; and
+ * comment of Edax's OBF files) is ignored, as are empty lines and lines
+ * starting with #.
+ *
+ * Output, one line per position: the board and player to move as read,
+ * then the best move (pass if the player must pass, none if the game is
+ * over), its score for the player to move (as Search gives it: exact
+ * results are Search.WIN plus the disc difference), the depth searched
+ * and the nodes visited. A line that cannot be read is written back with
+ * "error" and the reason instead, so the output still lines up with the
+ * input.
+ *
+ * Only a window of positions is in flight at once: the reader waits for
+ * a free slot before handing out the next position, and a result is kept
+ * only until every result before it has been written. Memory use
+ * therefore depends on the number of threads, never on the input size.
+ * Output is flushed whenever everything read so far has been written, so
+ * a slow producer sees each result straight away while a fast one gets
+ * large writes.
+ *
+ * java org.cis1200.othello.BatchAnalyzer [input-file|-] [depth] [threads] [budget-ms]
+ * (or java org.cis1200.Game analyse ...)
+ */
+public class BatchAnalyzer {
+
+    /**
+     * Default search depth per position.
+     */
+    public static final int DEFAULT_DEPTH = 8;
+
+    // positions in flight per thread (reading ahead keeps the threads busy)
+    private static final int WINDOW_PER_THREAD = 64;
+
+    // small, as every position starts from an empty table
+    private static final int TABLE_MEGABYTES = 1;
+
+    private final int threads;
+    private final int depth;
+    private final long budgetMillis;
+    private final ThreadLocal<TranspositionTable> tables;
+    private final ThreadLocal<Search> searches;
+
+    // the window: results by sequence number modulo its size
+    private final String[] results;
+    private final Semaphore free;
+    private PrintStream out;
+    private long read;
+    private long written;
+
+    /**
+     * Creates an analyzer.
+     *
+     * @param threads number of positions searched at once
+     * @param depth depth searched for every position
+     * @param budgetMillis time budget per position (Long.MAX_VALUE for none);
+     *                     depth 1 is always completed
+     * @param evaluator pattern weights to search with (null for the
+     *                  built-in evaluation)
+     */
+    public BatchAnalyzer(int threads, int depth, long budgetMillis, PatternEvaluator evaluator) {
+        if (threads < 1 || depth < 1 || budgetMillis <= 0) {
+            throw new IllegalArgumentException("Bad threads, depth or budget");
+        }
+        this.threads = threads;
+        this.depth = depth;
+        this.budgetMillis = budgetMillis;
+        // every thread keeps its own search and table for all its positions
+        tables = ThreadLocal.withInitial(() -> new TranspositionTable(TABLE_MEGABYTES));
+        searches = ThreadLocal.withInitial(() -> {
+            Search search = new Search(tables.get());
+            search.setEvaluator(evaluator);
+            return search;
+        });
+        results = new String[threads * WINDOW_PER_THREAD];
+        free = new Semaphore(results.length);
+    }
+
+    /**
+     * run analyses every position in the input and writes the results to
+     * out, blocking until they are all written.
+     *
+     * @return the number of positions analysed
+     */
+    public long run(BufferedReader in, PrintStream out) throws IOException, InterruptedException {
+        synchronized (this) {
+            this.out = out;
+            read = 0;
+            written = 0;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String position = line.trim();
+                if (position.isEmpty() || position.startsWith("#")) {
+                    continue;
+                }
+                free.acquire();
+                long sequence;
+                synchronized (this) {
+                    sequence = read++;
+                }
+                pool.execute(() -> {
+                    String result;
+                    try {
+                        result = analyse(position);
+                    } catch (Throwable e) {
+                        /* A result must still be written, or the output would stall
+                        at this gap and run would wait for its slot forever. An
+                        Error is passed on once its line is written.
+                         */
+                        finished(sequence, position + " error " + e);
+                        if (e instanceof Error) {
+                            throw (Error) e;
+                        }
+                        return;
+                    }
+                    finished(sequence, result);
+                });
+            }
+            // every slot is free again once the last result is written
+            free.acquire(results.length);
+            free.release(results.length);
+        } finally {
+            pool.shutdownNow();
+        }
+        synchronized (this) {
+            out.flush();
+            return written;
+        }
+    }
+
+    /* finished stores a result and writes every result that is now next
+    in line, freeing their slots for the reader.
+     */
+    private synchronized void finished(long sequence, String result) {
+        results[(int) (sequence % results.length)] = result;
+        int next;
+        while (results[next = (int) (written % results.length)] != null) {
+            out.println(results[next]);
+            results[next] = null;
+            written++;
+            free.release();
+        }
+        if (written == read) {
+            out.flush();
+        }
+    }
+
+    // analyse searches one input line and returns its output line
+    private String analyse(String line) {
+        Position position;
+        try {
+            position = parsePosition(line);
+        } catch (IllegalArgumentException e) {
+            return line + " error " + e.getMessage();
+        }
+        StringBuilder sb = new StringBuilder(96).append(formatPosition(position)).append(' ');
+        if (position.isGameOver()) {
+            int diff = position.getPieceCount(position.getCurrentPlayer() ? 1 : 2)
+                    - position.getPieceCount(position.getCurrentPlayer() ? 2 : 1);
+            return sb.append("none ").append(Search.exactScore(diff)).append(" 0 0").toString();
+        }
+        /* Clearing the table costs far less than a search, and it makes each
+        result depend only on the position: with entries left over from the
+        thread's earlier positions, a result would change with the number of
+        threads and the order they took the positions in.
+         */
+        tables.get().clear();
+        Search search = searches.get();
+        if (position.mustPass()) {
+            // the score of a pass is that of the opponent's reply, turned round
+            SearchResult reply = search.iterate(position.pass(), budgetMillis, depth);
+            return sb.append("pass ").append(-reply.getScore()).append(' ')
+                    .append(reply.getDepth()).append(' ').append(reply.getNodes()).toString();
+        }
+        SearchResult result = search.iterate(position, budgetMillis, depth);
+        return sb.append(Bitboard.squareName(result.getMove())).append(' ')
+                .append(result.getScore()).append(' ').append(result.getDepth()).append(' ')
+                .append(result.getNodes()).toString();
+    }
+
+    /**
+     * parsePosition reads a position in the input format above.
+     *
+     * @throws IllegalArgumentException if the line is not a position
+     */
+    static Position parsePosition(String line) {
+        String[] parts = line.trim().split("\\s+", 3);
+        if (parts.length < 2 || parts[0].length() != 64) {
+            throw new IllegalArgumentException("Expected 64 squares and the player to move");
+        }
+        long black = 0;
+        long white = 0;
+        for (int sq = 0; sq < 64; sq++) {
+            char cell = parts[0].charAt(sq);
+            if (cell == 'X' || cell == 'x' || cell == '*') {
+                black |= 1L << sq;
+            } else if (cell == 'O' || cell == 'o') {
+                white |= 1L << sq;
+            } else if (cell != '-' && cell != '.') {
+                throw new IllegalArgumentException("Bad square: " + cell);
+            }
+        }
+        String side = parts[1].endsWith(";") ? parts[1].substring(0, parts[1].length() - 1)
+                : parts[1];
+        if (side.equalsIgnoreCase("X") || side.equals("*")) {
+            return new Position(black, white, true);
+        } else if (side.equalsIgnoreCase("O")) {
+            return new Position(black, white, false);
+        }
+        throw new IllegalArgumentException("Bad player to move: " + parts[1]);
+    }
+
+    /**
+     * formatPosition writes a position in the input format.
+     */
+    static String formatPosition(Position position) {
+        StringBuilder sb = new StringBuilder(66);
+        for (int sq = 0; sq < 64; sq++) {
+            long bit = 1L << sq;
+            sb.append((position.getBlack() & bit) != 0 ? 'X'
+                    : (position.getWhite() & bit) != 0 ? 'O' : '-');
+        }
+        return sb.append(position.getCurrentPlayer() ? " X" : " O").toString();
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String input = args.length > 0 ? args[0] : "-";
+        int depth = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_DEPTH;
+        int threads = args.length > 2 ? Integer.parseInt(args[2])
+                : Runtime.getRuntime().availableProcessors();
+        long budget = args.length > 3 ? Long.parseLong(args[3]) : Long.MAX_VALUE;
+
+        Path weights = Paths.get(PatternEvaluator.DEFAULT_FILE);
+        PatternEvaluator evaluator = Files.exists(weights) ? PatternEvaluator.load(weights) : null;
+        BatchAnalyzer analyzer = new BatchAnalyzer(threads, depth, budget, evaluator);
+
+        // buffered, unlike System.out: run flushes whenever it has caught up
+        PrintStream out = new PrintStream(
+                new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 1 << 16),
+                false, StandardCharsets.US_ASCII);
+        long start = System.nanoTime();
+        long positions;
+        try (BufferedReader in = input.equals("-")
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.US_ASCII))
+                : Files.newBufferedReader(Paths.get(input), StandardCharsets.US_ASCII)) {
+            positions = analyzer.run(in, out);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.err.printf("%d positions in %.1f s, %.0f positions/sec%n", positions, seconds,
+                positions / seconds);
+    }
+}
@@ -0,0 +1,146 @@
+package org.cis1200.othello;
+
+/**
+ * Bitboard holds the bit tricks behind the Othello model.
+ *
+ * A side's discs are stored in a single long: the square at column c and
+ * row r is bit (r * 8 + c). So bit 0 is the top-left corner (a1), bit 7 is
+ * the top-right corner (h1) and bit 63 is the bottom-right corner (h8).
+ *
+ * Moving one square in a direction is then just a shift:
+ * 1. East / West => shift by 1
+ * 2. South / North => shift by 8
+ * 3. Diagonals => shift by 7 or 9
+ * Horizontal and diagonal shifts would wrap from one row into the next,
+ * so the opponent's discs are masked with the inner six columns first.
+ *
+ * All methods are static and never allocate, so they can be called from
+ * tight loops (search, perft, analysis jobs).
+ */
+public final class Bitboard {
+
+    /* the 8 directions as shift amounts: positive shifts left,
+    negative shifts (unsigned) right
+     */
+    private static final int[] SHIFTS = {1, -1, 8, -8, 9, -9, 7, -7};
+
+    // every column except the a- and h-file
+    private static final long INNER_COLUMNS = 0x7E7E7E7E7E7E7E7EL;
+
+    /* for each direction, the squares an opponent disc may be on
+    while we walk along it (vertical walks can never wrap)
+     */
+    private static final long[] MASKS = {
+        INNER_COLUMNS, INNER_COLUMNS, -1L, -1L,
+        INNER_COLUMNS, INNER_COLUMNS, INNER_COLUMNS, INNER_COLUMNS
+    };
+
+    /**
+     * Bits of the four centre discs for Player 1 (Black) and Player 2 (White)
+     * in the standard starting position.
+     */
+    public static final long START_BLACK = square(4, 3) | square(3, 4);
+    public static final long START_WHITE = square(3, 3) | square(4, 4);
+
+    private Bitboard() {
+    }
+
+    /**
+     * square returns the single-bit mask of the square at column c, row r.
+     */
+    public static long square(int c, int r) {
+        return 1L << (r * 8 + c);
+    }
+
+    /**
+     * index returns the bit index (0 - 63) of the square at column c, row r.
+     */
+    public static int index(int c, int r) {
+        return r * 8 + c;
+    }
+
+    /**
+     * squareName returns the usual name of square sq: a column letter
+     * (a - h) followed by a row number (1 - 8), e.g. "d3".
+     */
+    public static String squareName(int sq) {
+        return "" + (char) ('a' + (sq & 7)) + (char) ('1' + (sq >>> 3));
+    }
+
+    /**
+     * parseSquare is the inverse of squareName. Upper case letters are
+     * accepted too.
+     *
+     * @throws IllegalArgumentException if the text is not a square name
+     */
+    public static int parseSquare(String name) {
+        if (name.length() != 2) {
+            throw new IllegalArgumentException("Not a square: " + name);
+        }
+        int c = Character.toLowerCase(name.charAt(0)) - 'a';
+        int r = name.charAt(1) - '1';
+        if (c < 0 || c >= 8 || r < 0 || r >= 8) {
+            throw new IllegalArgumentException("Not a square: " + name);
+        }
+        return index(c, r);
+    }
+
+    private static long shift(long b, int s) {
+        return s > 0 ? b << s : b >>> -s;
+    }
+
+    /**
+     * legalMoves returns every empty square where the side owning `own`
+     * may play, i.e. every square that outflanks at least one `opp` disc.
+     *
+     * All 8 directions are handled in one pass over the board: the own
+     * discs are flooded through runs of opponent discs (at most 6 long)
+     * and the first empty square behind a run is a legal move.
+     */
+    public static long legalMoves(long own, long opp) {
+        long empty = ~(own | opp);
+        long moves = 0;
+        for (int dir = 0; dir < 8; dir++) {
+            int s = SHIFTS[dir];
+            long m = opp & MASKS[dir];
+            long t = shift(own, s) & m;
+            t |= shift(t, s) & m;
+            t |= shift(t, s) & m;
+            t |= shift(t, s) & m;
+            t |= shift(t, s) & m;
+            t |= shift(t, s) & m;
+            moves |= shift(t, s) & empty;
+        }
+        return moves;
+    }
+
+    /**
+     * flips returns the opponent discs that would be flipped if the side
+     * owning `own` played on square `sq`. The result is 0 if the move does
+     * not outflank anything (or the square is taken), which makes this a
+     * validity check and the move computation in a single call.
+     */
+    public static long flips(int sq, long own, long opp) {
+        long move = 1L << sq;
+        if (((own | opp) & move) != 0) {
+            return 0;
+        }
+        long flipped = 0;
+        for (int dir = 0; dir < 8; dir++) {
+            int s = SHIFTS[dir];
+            long m = opp & MASKS[dir];
+            long run = 0;
+            long x = shift(move, s);
+            // walk over the opponent discs in this direction
+            while ((x & m) != 0) {
+                run |= x;
+                x = shift(x, s);
+            }
+            // the run only counts if it is closed by one of our own discs
+            if ((x & own) != 0) {
+                flipped |= run;
+            }
+        }
+        return flipped;
+    }
+}
@@ -0,0 +1,263 @@
+package org.cis1200.othello;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ComputerPlayer picks moves for one side of an Othello game.
+ *
+ * It runs an iterative-deepening alpha-beta Search (see Search) from the
+ * current position and stops when its per-move time budget is used up.
+ * The move it returns is always the best move of the deepest search that
+ * finished in time.
+ *
+ * Results are kept in a transposition table from move to move, so the
+ * next search starts with what the previous one found.
+ *
+ * If it has an OpeningBook, a book move is played without searching
+ * whenever the book has one for the position.
+ *
+ * Once few enough squares are empty for a solve to fit in half of its
+ * budget (see solvableEmpties), it solves the endgame exactly (see
+ * EndgameSolver). The solve may use three quarters of the budget, and
+ * only if it does not finish does a search get the rest.
+ *
+ * With more than one thread, each search runs as a ParallelSearch over
+ * that many cores, whose helper threads are stopped by close.
+ *
+ * Every call gets its own Search and the table never locks, so one
+ * ComputerPlayer may be used from several threads at once. stop ends
+ * every search running at the time early, for a caller that no longer
+ * needs the move.
+ */
+public class ComputerPlayer implements Player {
+
+    /**
+     * Default time budget per move, in milliseconds.
+     */
+    public static final long DEFAULT_BUDGET_MILLIS = 1000;
+
+    /**
+     * Default transposition table size, in megabytes.
+     */
+    public static final int DEFAULT_TABLE_MEGABYTES = 16;
+
+    // no game lasts more than 60 moves, plus a few passes
+    private static final int MAX_DEPTH = 64;
+
+    /* How long a solve takes, roughly: about 30 ms at 14 empties, and 2.5
+    times as long for every empty more (medians over random positions; the
+    slowest ones took up to 6 times as long).
+     */
+    private static final double SOLVE_MILLIS_AT_14 = 30;
+    private static final double SOLVE_GROWTH = 2.5;
+
+    private final long budgetMillis;
+    private final TranspositionTable table;
+    private final ParallelSearch parallel;
+    private volatile OpeningBook book;
+    private volatile PatternEvaluator evaluator;
+    // the calls of search running now (see stop)
+    private final Set<Running> running = ConcurrentHashMap.newKeySet();
+
+    /* Running is one call of search. stop may come from another thread at
+    any time, so it stops the stage (solve or search) running then, and a
+    stage that starts after it is stopped straight away.
+     */
+    private static final class Running {
+        private volatile boolean stopped;
+        private volatile Runnable stage;
+
+        void start(Runnable stopStage) {
+            stage = stopStage;
+            if (stopped) {
+                stopStage.run();
+            }
+        }
+
+        void stop() {
+            stopped = true;
+            Runnable stopStage = stage;
+            if (stopStage != null) {
+                stopStage.run();
+            }
+        }
+    }
+
+    /**
+     * Creates a computer player.
+     *
+     * @param budgetMillis time budget per move in milliseconds
+     * @param tableMegabytes size of the transposition table in megabytes
+     * @param threads number of search threads
+     */
+    public ComputerPlayer(long budgetMillis, int tableMegabytes, int threads) {
+        if (budgetMillis <= 0) {
+            throw new IllegalArgumentException("Time budget must be positive");
+        }
+        this.budgetMillis = budgetMillis;
+        this.table = new TranspositionTable(tableMegabytes);
+        this.parallel = threads > 1 ? new ParallelSearch(threads, table) : null;
+    }
+
+    public ComputerPlayer(long budgetMillis, int tableMegabytes) {
+        this(budgetMillis, tableMegabytes, 1);
+    }
+
+    public ComputerPlayer(long budgetMillis) {
+        this(budgetMillis, DEFAULT_TABLE_MEGABYTES);
+    }
+
+    public ComputerPlayer() {
+        this(DEFAULT_BUDGET_MILLIS);
+    }
+
+    /**
+     * stop makes every search this player is running return as soon as
+     * it can, with the best move found so far (see Search.stop). A search
+     * started on a thread that has been interrupted is stopped too, so a
+     * caller that cancels its task and then calls stop cannot miss one
+     * that was just starting.
+     */
+    public void stop() {
+        for (Running call : running) {
+            call.stop();
+        }
+    }
+
+    /**
+     * close stops any running search and the helper threads of a
+     * multi-threaded player.
+     */
+    @Override
+    public void close() {
+        stop();
+        if (parallel != null) {
+            parallel.shutdown();
+        }
+    }
+
+    public long getBudgetMillis() {
+        return budgetMillis;
+    }
+
+    /**
+     * setOpeningBook gives the player a book to consult before searching
+     * (null for none).
+     */
+    public void setOpeningBook(OpeningBook book) {
+        this.book = book;
+    }
+
+    /**
+     * setEvaluator makes the search evaluate positions with pattern
+     * weights (null for the built-in evaluation).
+     */
+    public void setEvaluator(PatternEvaluator evaluator) {
+        this.evaluator = evaluator;
+        if (parallel != null) {
+            parallel.setEvaluator(evaluator);
+        }
+    }
+
+    /**
+     * analyse searches the position and returns the full result (move,
+     * score, depth reached, nodes).
+     */
+    public SearchResult analyse(Position position) {
+        return analyse(position, budgetMillis, MAX_DEPTH);
+    }
+
+    /**
+     * analyse with a time budget and depth limit of its own for this
+     * search, instead of the player's.
+     */
+    public SearchResult analyse(Position position, long budgetMillis, int maxDepth) {
+        if (budgetMillis <= 0 || maxDepth < 1) {
+            throw new IllegalArgumentException("Time budget and depth must be positive");
+        }
+        long start = EngineStats.ENABLED ? System.nanoTime() : 0;
+        SearchResult result = search(position, budgetMillis, Math.min(maxDepth, MAX_DEPTH));
+        if (EngineStats.ENABLED) {
+            EngineStats.moveSearched(System.nanoTime() - start);
+        }
+        return result;
+    }
+
+    // search runs pickMove where stop can reach it
+    private SearchResult search(Position position, long budgetMillis, int maxDepth) {
+        Running call = new Running();
+        running.add(call);
+        try {
+            if (Thread.currentThread().isInterrupted()) {
+                call.stop();
+            }
+            return pickMove(position, budgetMillis, maxDepth, call);
+        } finally {
+            running.remove(call);
+        }
+    }
+
+    // pickMove picks the move: from the book, the endgame solver or a search
+    private SearchResult pickMove(Position position, long budgetMillis, int maxDepth,
+            Running call) {
+        OpeningBook openingBook = book;
+        if (openingBook != null) {
+            int move = openingBook.bestMove(position, OpeningBook.DEFAULT_MIN_GAMES);
+            if (move >= 0) {
+                return new SearchResult(move, 0, 0, 0, 0);
+            }
+        }
+
+        long budget = budgetMillis;
+        int empties = Long.bitCount(~(position.getBlack() | position.getWhite()));
+        if (empties <= Math.min(EndgameSolver.PRACTICAL_EMPTIES, solvableEmpties(budget))) {
+            // the solve should take half the budget at most; it may take three quarters
+            EndgameSolver solver = new EndgameSolver(table);
+            call.start(solver::stop);
+            SearchResult solved = solver.solve(position, budget - budget / 4);
+            if (solved != null) {
+                return new SearchResult(solved.getMove(), Search.exactScore(solved.getScore()),
+                        solved.getDepth(), solved.getNodes(), solved.getMillis());
+            }
+            budget /= 4;
+        }
+        Search search = new Search(table);
+        call.start(search::stop);
+        if (parallel != null) {
+            return parallel.iterate(search, position, budget, maxDepth);
+        }
+        search.setEvaluator(evaluator);
+        return search.iterate(position, budget, maxDepth);
+    }
+
+    /**
+     * solvableEmpties returns the most empties at which a solve is expected
+     * to take no more than half of the given budget (17 for the default
+     * budget).
+     */
+    static int solvableEmpties(long budgetMillis) {
+        double factor = budgetMillis / 2.0 / SOLVE_MILLIS_AT_14;
+        return 14 + (int) Math.floor(Math.log(factor) / Math.log(SOLVE_GROWTH));
+    }
+
+    /**
+     * chooseMove returns the square (bit index r * 8 + c) to play in the
+     * given position, or SearchResult.PASS if there is no valid move.
+     */
+    @Override
+    public int chooseMove(Position position) {
+        return analyse(position).getMove();
+    }
+
+    /**
+     * chooseMove for the current state of an Othello game. The game itself
+     * is not changed.
+     */
+    public int chooseMove(Othello game) {
+        if (game.getGameStatus()) {
+            return SearchResult.PASS;
+        }
+        return chooseMove(game.toPosition());
+    }
+}
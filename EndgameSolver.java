@@ -0,0 +1,369 @@
+package org.cis1200.othello;
+
+/**
+ * EndgameSolver plays out the rest of the game perfectly: given a
+ * position, it finds the exact final disc difference with best play from
+ * both sides, and a move that reaches it.
+ *
+ * The score is the plain disc difference at the end of the game (the way
+ * Othello.checkWinner counts), from the point of view of the player to
+ * move: positive means a win.
+ *
+ * A perfect solve has to visit every line of play, so the solver uses the
+ * usual tricks to keep ~20 empties down to seconds:
+ * 1. Fastest-first: with many empties, try first the moves that leave the
+ * opponent the fewest replies (their subtrees are the smallest)
+ * 2. Parity: with few empties, try first the squares in quadrants that
+ * have an odd number of empties (whoever moves last in a region gains)
+ * 3. The last 1 empty square is scored directly from its flip count,
+ * without generating moves at all
+ * 4. A transposition table for the nodes high in the tree
+ * 5. Principal variation search: every move after the first is only
+ * proven to be no better with a null window, which is much cheaper
+ *
+ * An EndgameSolver is not thread-safe: use one instance per thread.
+ */
+public final class EndgameSolver {
+
+    /**
+     * Number of empties up to which solving is practical in seconds.
+     */
+    public static final int PRACTICAL_EMPTIES = 20;
+
+    // below this many empties: parity order, no move generation or sorting
+    private static final int PARITY_EMPTIES = 7;
+    // at or above this many empties: use the transposition table
+    private static final int TABLE_EMPTIES = 12;
+
+    private static final int CLOCK_MASK = 4095;
+
+    private static final long CORNERS = 0x8100000000000081L;
+
+    // the 4 quadrants of the board (4x4 squares each)
+    private static final long[] QUADRANTS = {
+        0x000000000F0F0F0FL, 0x00000000F0F0F0F0L,
+        0x0F0F0F0F00000000L, 0xF0F0F0F000000000L
+    };
+
+    private final TranspositionTable table;
+
+    // move lists for fastest-first ordering, one row per ply (no allocation);
+    // 64 empties plus passes fit, and no position has more than 64 moves
+    private final int[][] moveBuffer = new int[128][64];
+    private final int[][] keyBuffer = new int[128][64];
+
+    private long nodes;
+    // for EngineStats: moves generated, table probes and hits
+    private long generated;
+    private long probes;
+    private long hits;
+    private long deadline;
+    private boolean aborted;
+    // set from another thread to give up early (see stop)
+    private volatile boolean stopRequested;
+
+    /**
+     * Creates a solver that uses the given transposition table. The table
+     * may be shared with a Search: the solver keys its entries differently.
+     */
+    public EndgameSolver(TranspositionTable table) {
+        this.table = table;
+    }
+
+    /**
+     * Creates a solver with a transposition table of the given size.
+     */
+    public EndgameSolver(int tableMegabytes) {
+        this(new TranspositionTable(tableMegabytes));
+    }
+
+    public EndgameSolver() {
+        this(16);
+    }
+
+    /**
+     * stop asks a running solve (on another thread) to give up as soon as
+     * possible, as if its time had run out.
+     */
+    public void stop() {
+        stopRequested = true;
+    }
+
+    /**
+     * solve finds the exact result of the position.
+     *
+     * @return the best move (or PASS) with the exact final disc difference
+     *         as its score, and the number of empties as its depth
+     */
+    public SearchResult solve(Position position) {
+        return solve(position, Long.MAX_VALUE);
+    }
+
+    /**
+     * solve with a time limit.
+     *
+     * @return the result, or null if the solve did not finish in time (or
+     *         was stopped)
+     */
+    public SearchResult solve(Position position, long budgetMillis) {
+        long start = System.nanoTime();
+        deadline = start + Math.min(budgetMillis, Long.MAX_VALUE / 4_000_000L) * 1_000_000L;
+        nodes = 0;
+        generated = 0;
+        probes = 0;
+        hits = 0;
+        aborted = false;
+        table.newSearch();
+
+        long own = position.getCurrentPlayer() ? position.getBlack() : position.getWhite();
+        long opp = position.getCurrentPlayer() ? position.getWhite() : position.getBlack();
+        int empties = Long.bitCount(~(own | opp));
+        long moves = Bitboard.legalMoves(own, opp);
+
+        int bestMove = SearchResult.PASS;
+        int best;
+        if (moves == 0) {
+            best = solve(own, opp, -65, 65, false, 0);
+        } else {
+            // the root is searched in fastest-first order too
+            int count = orderFastestFirst(own, opp, moves, 0);
+            best = -65;
+            for (int i = 0; i < count && !aborted; i++) {
+                int sq = moveBuffer[0][i];
+                long flipped = Bitboard.flips(sq, own, opp);
+                long nextOwn = opp & ~flipped;
+                long nextOpp = own | flipped | (1L << sq);
+                int score;
+                if (i == 0) {
+                    score = -solve(nextOwn, nextOpp, -65, 65, false, 1);
+                } else {
+                    score = -solve(nextOwn, nextOpp, -best - 1, -best, false, 1);
+                    if (score > best) {
+                        score = -solve(nextOwn, nextOpp, -65, -score, false, 1);
+                    }
+                }
+                if (score > best) {
+                    best = score;
+                    bestMove = sq;
+                }
+            }
+        }
+        if (EngineStats.ENABLED) {
+            EngineStats.searched(nodes, generated, probes, hits);
+        }
+        if (aborted) {
+            return null;
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000L;
+        return new SearchResult(bestMove, best, empties, nodes, millis);
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * solve returns the exact final disc difference for the player owning
+     * `own`, within the window alpha..beta (fail-soft).
+     */
+    private int solve(long own, long opp, int alpha, int beta, boolean passed, int ply) {
+        nodes++;
+        if ((nodes & CLOCK_MASK) == 0 && (stopRequested || System.nanoTime() >= deadline)) {
+            aborted = true;
+        }
+        if (aborted) {
+            return 0;
+        }
+
+        long empty = ~(own | opp);
+        int empties = Long.bitCount(empty);
+        if (empties == 0) {
+            return Long.bitCount(own) - Long.bitCount(opp);
+        }
+        if (empties == 1) {
+            return lastEmpty(own, opp, Long.numberOfTrailingZeros(empty));
+        }
+        if (empties < PARITY_EMPTIES) {
+            return solveByParity(own, opp, empty, alpha, beta, passed, ply);
+        }
+
+        long moves = Bitboard.legalMoves(own, opp);
+        if (EngineStats.ENABLED) {
+            generated += Long.bitCount(moves);
+        }
+        if (moves == 0) {
+            if (passed) {
+                return Long.bitCount(own) - Long.bitCount(opp);
+            }
+            return -solve(opp, own, -beta, -alpha, true, ply + 1);
+        }
+
+        long key = 0;
+        int ttMove = -1;
+        if (empties >= TABLE_EMPTIES) {
+            key = key(own, opp);
+            long entry = table.probe(key);
+            if (EngineStats.ENABLED) {
+                probes++;
+                hits += entry != TranspositionTable.MISS ? 1 : 0;
+            }
+            if (entry != TranspositionTable.MISS) {
+                ttMove = TranspositionTable.move(entry);
+                int score = TranspositionTable.score(entry);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT
+                        || (bound == TranspositionTable.LOWER && score >= beta)
+                        || (bound == TranspositionTable.UPPER && score <= alpha)) {
+                    return score;
+                }
+            }
+        }
+
+        int alphaBefore = alpha;
+        int best = -65;
+        int bestMove = -1;
+        int count = orderFastestFirst(own, opp, moves, ply);
+        int[] order = moveBuffer[ply];
+        // the move that was best last time goes first
+        if (ttMove >= 0) {
+            for (int i = 1; i < count; i++) {
+                if (order[i] == ttMove) {
+                    order[i] = order[0];
+                    order[0] = ttMove;
+                    break;
+                }
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            int sq = order[i];
+            long flipped = Bitboard.flips(sq, own, opp);
+            long nextOwn = opp & ~flipped;
+            long nextOpp = own | flipped | (1L << sq);
+            int score;
+            if (i == 0) {
+                score = -solve(nextOwn, nextOpp, -beta, -alpha, false, ply + 1);
+            } else {
+                // prove the move is no better with a null window first
+                score = -solve(nextOwn, nextOpp, -alpha - 1, -alpha, false, ply + 1);
+                if (score > alpha && score < beta) {
+                    score = -solve(nextOwn, nextOpp, -beta, -score, false, ply + 1);
+                }
+            }
+            if (score > best) {
+                best = score;
+                bestMove = sq;
+                if (score > alpha) {
+                    alpha = score;
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+
+        if (empties >= TABLE_EMPTIES && !aborted) {
+            int bound = best <= alphaBefore ? TranspositionTable.UPPER
+                    : best >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+            table.store(key, empties, bound, best, bestMove);
+        }
+        return best;
+    }
+
+    /* solveByParity handles the last few empties: the empty squares are
+    tried directly (odd quadrants first) instead of generating and
+    sorting the move list.
+     */
+    private int solveByParity(long own, long opp, long empty, int alpha, int beta,
+                              boolean passed, int ply) {
+        long odd = 0;
+        for (long quadrant : QUADRANTS) {
+            if ((Long.bitCount(empty & quadrant) & 1) != 0) {
+                odd |= quadrant;
+            }
+        }
+
+        int best = -65;
+        boolean moved = false;
+        for (int pass = 0; pass < 2; pass++) {
+            long squares = empty & (pass == 0 ? odd : ~odd);
+            while (squares != 0) {
+                int sq = Long.numberOfTrailingZeros(squares);
+                squares &= squares - 1;
+                long flipped = Bitboard.flips(sq, own, opp);
+                if (flipped == 0) {
+                    continue;
+                }
+                moved = true;
+                int score = -solve(opp & ~flipped, own | flipped | (1L << sq),
+                        -beta, -alpha, false, ply + 1);
+                if (score > best) {
+                    best = score;
+                    if (score > alpha) {
+                        alpha = score;
+                        if (alpha >= beta) {
+                            return best;
+                        }
+                    }
+                }
+            }
+        }
+        if (moved) {
+            return best;
+        }
+        if (passed) {
+            return Long.bitCount(own) - Long.bitCount(opp);
+        }
+        return -solve(opp, own, -beta, -alpha, true, ply + 1);
+    }
+
+    /* lastEmpty scores the position with one empty square left: whoever
+    can play there flips some discs, and then the game is over.
+     */
+    private int lastEmpty(long own, long opp, int sq) {
+        int diff = Long.bitCount(own) - Long.bitCount(opp);
+        int flipped = Long.bitCount(Bitboard.flips(sq, own, opp));
+        if (flipped != 0) {
+            return diff + 2 * flipped + 1;
+        }
+        flipped = Long.bitCount(Bitboard.flips(sq, opp, own));
+        if (flipped != 0) {
+            return diff - 2 * flipped - 1;
+        }
+        return diff;
+    }
+
+    /* orderFastestFirst fills moveBuffer[ply] with the moves sorted by how
+    many replies they leave the opponent (corners count double), fewest
+    first, and returns the number of moves.
+     */
+    private int orderFastestFirst(long own, long opp, long moves, int ply) {
+        int[] order = moveBuffer[ply];
+        int[] keys = keyBuffer[ply];
+        int count = 0;
+        while (moves != 0) {
+            int sq = Long.numberOfTrailingZeros(moves);
+            moves &= moves - 1;
+            long flipped = Bitboard.flips(sq, own, opp);
+            long replies = Bitboard.legalMoves(opp & ~flipped, own | flipped | (1L << sq));
+            int k = Long.bitCount(replies) + Long.bitCount(replies & CORNERS);
+            // insertion sort: move lists are short
+            int i = count++;
+            while (i > 0 && keys[i - 1] > k) {
+                keys[i] = keys[i - 1];
+                order[i] = order[i - 1];
+                i--;
+            }
+            keys[i] = k;
+            order[i] = sq;
+        }
+        return count;
+    }
+
+    // key mixes both bitboards into a table key (colour does not matter here)
+    private static long key(long own, long opp) {
+        long h = own * 0x9E3779B97F4A7C15L ^ Long.rotateLeft(opp * 0xC2B2AE3D27D4EB4FL, 31);
+        h ^= h >>> 29;
+        h *= 0xBF58476D1CE4E5B9L;
+        return h ^ (h >>> 32);
+    }
+}
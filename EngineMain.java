@@ -0,0 +1,311 @@
+package org.cis1200.othello;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * EngineMain runs the engine with no user interface, speaking the NBoard
+ * engine protocol on standard input and output, so other programs (NBoard
+ * itself, or engine-vs-engine scripts) can use it as an opponent.
+ *
+ * Requests, one per line:
+ * 1. nboard version: answers "set myname Othello"
+ * 2. set game GGF: sets up the position from a GGF game (start board and
+ * moves)
+ * 3. set depth n: searches at most n plies deep
+ * 4. set movetime millis: the time budget per move (not part of NBoard)
+ * 5. move square[/eval/time]: plays a move (PA to pass)
+ * 6. go [millis]: answers "=== square/eval/time" with the move to play
+ * 7. hint n: answers "search square eval 0 depth" for the n best moves,
+ * then "status"
+ * 8. ping n: answers "pong n" once everything before it is done
+ * 9. learn: answers "learned"; quit: exits
+ * Other requests are ignored. Evals are from the point of view of the
+ * player to move: the exact disc difference once the game is solved, and
+ * otherwise the search score / 100.
+ *
+ * Nothing here loads AWT or Swing, and the search is only set up on the
+ * first go or hint, so the engine answers within tens of milliseconds of
+ * being started. The evaluation weights in PatternEvaluator.DEFAULT_FILE
+ * are used if the file exists.
+ *
+ * Class data sharing cuts the start-up time further (by about 30 ms).
+ * With the classes in a jar (it does not work with a directory), record
+ * the classes the engine uses once:
+ *   printf 'nboard 2\ngo 100\nquit\n' | java -XX:ArchiveClassesAtExit=engine.jsa
+ *       -cp othello.jar org.cis1200.othello.EngineMain
+ * and start it with -XX:SharedArchiveFile=engine.jsa from then on.
+ *
+ * java org.cis1200.othello.EngineMain [threads] [table-megabytes]
+ * (or java org.cis1200.Game engine [threads] [table-megabytes])
+ */
+public class EngineMain {
+
+    // deepest the hint search goes (it has no time limit)
+    private static final int HINT_DEPTH = 8;
+    private static final int HINT_TABLE_MEGABYTES = 4;
+
+    private final PrintStream out;
+    private final int threads;
+    private final int tableMegabytes;
+    private final PatternEvaluator evaluator;
+    private ComputerPlayer player;
+    private Search hints;
+    private Position position = Position.start();
+    private int maxDepth = 64;
+    private long moveMillis = ComputerPlayer.DEFAULT_BUDGET_MILLIS;
+
+    /**
+     * Creates an engine that writes its answers to out.
+     *
+     * @param evaluator pattern weights to search with (null for the
+     * built-in evaluation)
+     */
+    public EngineMain(PrintStream out, int threads, int tableMegabytes,
+                      PatternEvaluator evaluator) {
+        this.out = out;
+        this.threads = threads;
+        this.tableMegabytes = tableMegabytes;
+        this.evaluator = evaluator;
+    }
+
+    public Position getPosition() {
+        return position;
+    }
+
+    /**
+     * run answers requests from in until quit or the end of the input.
+     */
+    public void run(BufferedReader in) throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            line = line.trim();
+            if (line.equals("quit")) {
+                return;
+            }
+            try {
+                handle(line);
+            } catch (IllegalArgumentException e) {
+                out.println("status " + e.getMessage());
+            }
+            out.flush();
+        }
+    }
+
+    /**
+     * handle answers one request line.
+     *
+     * @throws IllegalArgumentException if the request is malformed
+     */
+    public void handle(String line) {
+        String[] words = line.split("\\s+", 3);
+        switch (words[0]) {
+            case "nboard":
+                out.println("set myname Othello");
+                break;
+            case "ping":
+                out.println("pong" + (words.length > 1 ? " " + words[1] : ""));
+                break;
+            case "learn":
+                out.println("learned");
+                break;
+            case "set":
+                if (words.length == 3) {
+                    set(words[1], words[2]);
+                }
+                break;
+            case "move":
+                if (words.length < 2) {
+                    throw new IllegalArgumentException("move needs a square");
+                }
+                position = play(position, words[1].split("/")[0]);
+                break;
+            case "go":
+                go(words.length > 1 ? Long.parseLong(words[1]) : moveMillis);
+                break;
+            case "hint":
+                hint(words.length > 1 ? Integer.parseInt(words[1]) : 1);
+                break;
+            default:
+                // not a request the engine needs to answer
+        }
+    }
+
+    private void set(String name, String value) {
+        switch (name) {
+            case "game":
+                position = parseGame(value);
+                break;
+            case "depth":
+                maxDepth = Math.max(1, Integer.parseInt(value));
+                break;
+            case "movetime":
+                moveMillis = Math.max(1, Long.parseLong(value));
+                break;
+            default:
+                // contempt and other settings do not apply to this engine
+        }
+    }
+
+    private void go(long millis) {
+        if (position.isGameOver()) {
+            throw new IllegalArgumentException("The game is over");
+        }
+        if (position.mustPass()) {
+            out.println("=== PA");
+            return;
+        }
+        SearchResult result = player().analyse(position, millis, maxDepth);
+        out.printf("=== %s/%s/%.2f%n", Bitboard.squareName(result.getMove()),
+                formatEval(result.getScore()), result.getMillis() / 1000.0);
+    }
+
+    // hint scores every move with a full window and lists the best n
+    private void hint(int n) {
+        if (!position.isGameOver() && !position.mustPass()) {
+            if (hints == null) {
+                hints = new Search(new TranspositionTable(HINT_TABLE_MEGABYTES));
+                hints.setEvaluator(evaluator);
+            }
+            int depth = Math.min(maxDepth, HINT_DEPTH);
+            int[] scores = hints.scoreMoves(position, depth);
+            // sort the moves by score, best first, packed as score and square
+            long moves = Bitboard.legalMoves(
+                    position.getCurrentPlayer() ? position.getBlack() : position.getWhite(),
+                    position.getCurrentPlayer() ? position.getWhite() : position.getBlack());
+            long[] ranked = new long[Long.bitCount(moves)];
+            for (int i = 0; moves != 0; i++, moves &= moves - 1) {
+                int sq = Long.numberOfTrailingZeros(moves);
+                ranked[i] = (long) -scores[sq] << 8 | sq;
+            }
+            Arrays.sort(ranked);
+            for (int i = 0; i < Math.min(n, ranked.length); i++) {
+                int sq = (int) (ranked[i] & 0xFF);
+                out.println("search " + Bitboard.squareName(sq) + " " + formatEval(scores[sq])
+                        + " 0 " + depth);
+            }
+        }
+        out.println("status");
+    }
+
+    private ComputerPlayer player() {
+        if (player == null) {
+            player = new ComputerPlayer(moveMillis, tableMegabytes, threads);
+            player.setEvaluator(evaluator);
+        }
+        return player;
+    }
+
+    // loadWeights reads the weights file if there is one
+    private static PatternEvaluator loadWeights(Path file) {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try {
+            return PatternEvaluator.load(file);
+        } catch (IOException e) {
+            System.err.println("Could not load evaluation weights: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static String formatEval(int score) {
+        if (score > Search.WIN) {
+            return Integer.toString(score - Search.WIN);
+        } else if (score < -Search.WIN) {
+            return Integer.toString(score + Search.WIN);
+        }
+        return String.format("%.2f", score / 100.0);
+    }
+
+    // play makes a move given as a square name, or PA for a pass
+    private static Position play(Position position, String move) {
+        if (move.equalsIgnoreCase("PA")) {
+            if (!position.mustPass()) {
+                throw new IllegalArgumentException("Cannot pass here");
+            }
+            return position.pass();
+        }
+        return position.play(Bitboard.parseSquare(move));
+    }
+
+    /**
+     * parseGame reads the position at the end of a GGF game record: the
+     * board in BO[8 board side] followed by the moves in B[...] and W[...].
+     * The board lists the squares a1 to h8 row by row, with * for Black, O
+     * for White and - for empty, and the side is * or O. The rows may be
+     * separated by spaces, as most GUIs send them.
+     *
+     * @throws IllegalArgumentException if the game cannot be read
+     */
+    static Position parseGame(String ggf) {
+        Position position = null;
+        int i = 0;
+        while ((i = ggf.indexOf('[', i)) >= 0) {
+            int end = ggf.indexOf(']', i);
+            if (end < 0) {
+                throw new IllegalArgumentException("Unterminated GGF tag");
+            }
+            int start = i;
+            while (start > 0 && Character.isUpperCase(ggf.charAt(start - 1))) {
+                start--;
+            }
+            String tag = ggf.substring(start, i);
+            String value = ggf.substring(i + 1, end).trim();
+            if (tag.equals("BO")) {
+                position = parseBoard(value);
+            } else if ((tag.equals("B") || tag.equals("W")) && position != null) {
+                if (position.getCurrentPlayer() != tag.equals("B")) {
+                    // a side moving out of turn means the other one passed
+                    position = position.pass();
+                }
+                position = play(position, value.split("/")[0]);
+            }
+            i = end + 1;
+        }
+        if (position == null) {
+            throw new IllegalArgumentException("GGF game has no board");
+        }
+        return position;
+    }
+
+    private static Position parseBoard(String board) {
+        String[] parts = board.split("\\s+");
+        if (parts.length < 3 || !parts[0].equals("8")) {
+            throw new IllegalArgumentException("Only 8x8 GGF boards are supported");
+        }
+        // the size comes first and the side to move last; the cells are in between
+        String cells = String.join("", Arrays.asList(parts).subList(1, parts.length - 1));
+        if (cells.length() != 64) {
+            throw new IllegalArgumentException("Bad GGF board: " + cells);
+        }
+        long black = 0;
+        long white = 0;
+        for (int sq = 0; sq < 64; sq++) {
+            char cell = cells.charAt(sq);
+            if (cell == '*') {
+                black |= 1L << sq;
+            } else if (cell == 'O') {
+                white |= 1L << sq;
+            }
+        }
+        return new Position(black, white, parts[parts.length - 1].equals("*"));
+    }
+
+    public static void main(String[] args) throws IOException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 1;
+        int megabytes = args.length > 1 ? Integer.parseInt(args[1])
+                : ComputerPlayer.DEFAULT_TABLE_MEGABYTES;
+        BufferedReader in = new BufferedReader(
+                new InputStreamReader(System.in, StandardCharsets.US_ASCII));
+        PatternEvaluator weights = loadWeights(Paths.get(PatternEvaluator.DEFAULT_FILE));
+        new EngineMain(System.out, threads, megabytes, weights).run(in);
+    }
+}
@@ -0,0 +1,244 @@
+package org.cis1200.othello;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * EngineStats counts what the engine does, for the whole program:
+ * 1. moves played on Othello models, and how long playing one took
+ * (the whole of playTurn, including finding the next player's moves;
+ * every 16th move is timed)
+ * 2. nodes searched, moves generated and transposition table hits, over
+ * every Search and EndgameSolver
+ * 3. how long ComputerPlayer took per move
+ * While Flight Recorder is running, every Search also sends an event per
+ * depth (see SearchIterationEvent).
+ *
+ * The counters are cheap enough to leave on: searches count in plain
+ * fields and add them here once per search, and the rest is one
+ * LongAdder increment (no locks, no allocation). Running with
+ * -Dothello.stats=false turns everything off; ENABLED is then a constant
+ * false, and the JIT removes the instrumentation entirely.
+ *
+ * The numbers can be read with the getters, printed with summary, or
+ * watched over JMX after registerMBean.
+ */
+public final class EngineStats {
+
+    /**
+     * Whether the engine records statistics (on unless the system
+     * property othello.stats is "false").
+     */
+    public static final boolean ENABLED = !"false".equals(System.getProperty("othello.stats"));
+
+    private static final LongAdder MOVES_PLAYED = new LongAdder();
+    private static final LongAdder NODES = new LongAdder();
+    private static final LongAdder MOVES_GENERATED = new LongAdder();
+    private static final LongAdder TABLE_PROBES = new LongAdder();
+    private static final LongAdder TABLE_HITS = new LongAdder();
+    private static final LongAdder SEARCHES = new LongAdder();
+
+    private static final LatencyHistogram MOVE_PLAYED = new LatencyHistogram();
+    private static final LatencyHistogram SEARCH = new LatencyHistogram();
+
+    private EngineStats() {
+    }
+
+    // recording, called by the engine only when ENABLED
+
+    static void movesPlayed(int moves) {
+        MOVES_PLAYED.add(moves);
+    }
+
+    // nanos: how long one playTurn took
+    static void movePlayed(long nanos) {
+        MOVE_PLAYED.record(nanos);
+    }
+
+    static void searched(long nodes, long generated, long probes, long hits) {
+        NODES.add(nodes);
+        MOVES_GENERATED.add(generated);
+        TABLE_PROBES.add(probes);
+        TABLE_HITS.add(hits);
+    }
+
+    static void moveSearched(long nanos) {
+        SEARCHES.increment();
+        SEARCH.record(nanos);
+    }
+
+    /**
+     * getMovesPlayed returns the number of moves made with Othello.playTurn.
+     * A game adds its moves every 16 moves and when it ends, so up to 15
+     * moves of a game still going (or abandoned) are not counted yet.
+     */
+    public static long getMovesPlayed() {
+        return MOVES_PLAYED.sum();
+    }
+
+    /**
+     * getNodesSearched returns the positions visited by all searches.
+     */
+    public static long getNodesSearched() {
+        return NODES.sum();
+    }
+
+    /**
+     * getMovesGenerated returns the number of legal moves the searches
+     * generated (the total size of every move list).
+     */
+    public static long getMovesGenerated() {
+        return MOVES_GENERATED.sum();
+    }
+
+    public static long getTableProbes() {
+        return TABLE_PROBES.sum();
+    }
+
+    public static long getTableHits() {
+        return TABLE_HITS.sum();
+    }
+
+    /**
+     * getTableHitRate returns the fraction of transposition table probes
+     * that found an entry (0 if there were none).
+     */
+    public static double getTableHitRate() {
+        long probes = TABLE_PROBES.sum();
+        return probes == 0 ? 0 : (double) TABLE_HITS.sum() / probes;
+    }
+
+    /**
+     * getSearches returns the number of moves ComputerPlayer has chosen.
+     */
+    public static long getSearches() {
+        return SEARCHES.sum();
+    }
+
+    /**
+     * getMovePlayedLatency returns how long Othello.playTurn took to play
+     * a move, placing and flipping discs and finding the next player's
+     * moves (for every 16th move).
+     */
+    public static LatencyHistogram getMovePlayedLatency() {
+        return MOVE_PLAYED;
+    }
+
+    /**
+     * getSearchLatency returns how long ComputerPlayer took per move.
+     */
+    public static LatencyHistogram getSearchLatency() {
+        return SEARCH;
+    }
+
+    /**
+     * reset sets every counter and histogram back to zero.
+     */
+    public static void reset() {
+        MOVES_PLAYED.reset();
+        NODES.reset();
+        MOVES_GENERATED.reset();
+        TABLE_PROBES.reset();
+        TABLE_HITS.reset();
+        SEARCHES.reset();
+        MOVE_PLAYED.reset();
+        SEARCH.reset();
+    }
+
+    /**
+     * summary returns the statistics as a few lines of text.
+     */
+    public static String summary() {
+        if (!ENABLED) {
+            return "engine statistics are off";
+        }
+        return String.format("moves played %d, move played p50 %d ns, p99 %d ns%n"
+                        + "nodes %d, moves generated %d, table hit rate %.1f%%%n"
+                        + "searches %d, p50 %d ms, p99 %d ms",
+                getMovesPlayed(), MOVE_PLAYED.percentile(0.5), MOVE_PLAYED.percentile(0.99),
+                getNodesSearched(), getMovesGenerated(), getTableHitRate() * 100,
+                getSearches(), SEARCH.percentile(0.5) / 1_000_000,
+                SEARCH.percentile(0.99) / 1_000_000);
+    }
+
+    /**
+     * registerMBean makes the statistics visible over JMX. Registering
+     * more than once does nothing.
+     */
+    public static void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MXBean(),
+                    new ObjectName("org.cis1200.othello:type=EngineStats"));
+        } catch (InstanceAlreadyExistsException e) {
+            // already registered
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not register engine statistics", e);
+        }
+    }
+
+    // MXBean hands the static statistics to JMX
+    private static final class MXBean implements EngineStatsMXBean {
+        @Override
+        public long getMovesPlayed() {
+            return EngineStats.getMovesPlayed();
+        }
+
+        @Override
+        public long getNodesSearched() {
+            return EngineStats.getNodesSearched();
+        }
+
+        @Override
+        public long getMovesGenerated() {
+            return EngineStats.getMovesGenerated();
+        }
+
+        @Override
+        public long getTableProbes() {
+            return EngineStats.getTableProbes();
+        }
+
+        @Override
+        public long getTableHits() {
+            return EngineStats.getTableHits();
+        }
+
+        @Override
+        public double getTableHitRate() {
+            return EngineStats.getTableHitRate();
+        }
+
+        @Override
+        public long getSearches() {
+            return EngineStats.getSearches();
+        }
+
+        @Override
+        public long getMovePlayedP50Nanos() {
+            return MOVE_PLAYED.percentile(0.5);
+        }
+
+        @Override
+        public long getMovePlayedP99Nanos() {
+            return MOVE_PLAYED.percentile(0.99);
+        }
+
+        @Override
+        public long getSearchP50Millis() {
+            return SEARCH.percentile(0.5) / 1_000_000;
+        }
+
+        @Override
+        public long getSearchP99Millis() {
+            return SEARCH.percentile(0.99) / 1_000_000;
+        }
+
+        @Override
+        public void reset() {
+            EngineStats.reset();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package org.cis1200.othello;
+
+/**
+ * EngineStatsMXBean is how EngineStats shows up in JMX tools such as
+ * JConsole, under the name org.cis1200.othello:type=EngineStats.
+ */
+public interface EngineStatsMXBean {
+
+    long getMovesPlayed();
+
+    long getNodesSearched();
+
+    long getMovesGenerated();
+
+    long getTableProbes();
+
+    long getTableHits();
+
+    double getTableHitRate();
+
+    long getSearches();
+
+    long getMovePlayedP50Nanos();
+
+    long getMovePlayedP99Nanos();
+
+    long getSearchP50Millis();
+
+    long getSearchP99Millis();
+
+    void reset();
+}
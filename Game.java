@@ -1,6 +1,10 @@
 package org.cis1200;
 
+import java.io.IOException;
+import java.util.Arrays;
 import javax.swing.*;
+import org.cis1200.othello.BatchAnalyzer;
+import org.cis1200.othello.EngineMain;
 
 public class Game {
     /**
@@ -8,7 +12,17 @@ public class Game {
      * class of your choosing and runs it. IMPORTANT: Do NOT delete! You MUST
      * include a main method in your final submission.
      */
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException, InterruptedException {
+        // "engine" runs without any user interface (see EngineMain)
+        if (args.length > 0 && args[0].equals("engine")) {
+            EngineMain.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        // "analyse" grades positions in bulk (see BatchAnalyzer)
+        if (args.length > 0 && args[0].equals("analyse")) {
+            BatchAnalyzer.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
         // Set the game you want to run here
         Runnable game = new org.cis1200.othello.RunOthello();
         SwingUtilities.invokeLater(game);
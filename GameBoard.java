@@ -4,8 +4,20 @@ package org.cis1200.othello;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * This class instantiates a TicTacToe object, which is the model for the game.
@@ -32,11 +44,81 @@ public class GameBoard extends JPanel {
     private JLabel player1Count;
     private JLabel player2Count;
 
+    /* Computer players, indexed by player number (1 or 2).
+    null means that side is played by a human clicking the board.
+     */
+    private final ComputerPlayer[] computers = new ComputerPlayer[3];
+    // true while a computer player is searching in the background
+    private boolean thinking;
+    // bumped on reset, so a search started before it is ignored
+    private int generation;
+    // the background search for the computer's move, and the player running it
+    private SwingWorker<Integer, Void> computerMove;
+    private ComputerPlayer searchingPlayer;
+
+    /* Move hints: valid moves, with opening book moves highlighted. They
+    are worked out once per position (see updateHints), not every time a
+    cell is painted.
+     */
+    private boolean showHints;
+    private OpeningBook book;
+    // cells (row * size + col) with a valid move, and the book moves among them
+    private int[] hintCells = NO_HINTS;
+    private List<OpeningBook.Entry> bookHints = List.of();
+
+    private static final int[] NO_HINTS = new int[0];
+    private static final Color BOOK_COLOR = new Color(0, 128, 0);
+
+    /* Rendering state. Only the cells that change are repainted, so the
+    board remembers what it last showed:
+    1. the board size, the discs of each player and the squares that had
+    hints (the discs and hints as bitboards, so only for 8x8 boards;
+    other sizes are always repainted whole)
+    2. the grid, drawn once into an image at the screen's scale
+    3. the discs being flipped by the animation (if it is on)
+     */
+    private int shownSize = Othello.STANDARD_SIZE;
+    private long shownBlack;
+    private long shownWhite;
+    private long shownHints;
+    private BufferedImage grid;
+    private int gridSize;
+    private boolean animateFlips;
+    private long animating;
+    private int animationFrame;
+    private final Timer animation;
+
+    // the flip animation: frames, and time between frames in milliseconds
+    private static final int ANIMATION_FRAMES = 8;
+    private static final int ANIMATION_DELAY = 30;
+    // above this many changed cells, one repaint of the board is cheaper
+    private static final int MAX_CELL_REPAINTS = 16;
+
+    /* Analysis overlay: a score on every valid move, from a search that
+    runs on its own thread and gets deeper until the next move. Each
+    analysis has a generation number, and results from an older one
+    are dropped when they reach the event thread.
+     */
+    private boolean showAnalysis;
+    private int[] moveScores;
+    private int analysisDepth;
+    private long analysedCells;
+    private int analysisGeneration;
+    private Search analysis;
+    private final TranspositionTable analysisTable =
+            new TranspositionTable(ComputerPlayer.DEFAULT_TABLE_MEGABYTES);
+    private final ExecutorService analysisExecutor = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "Othello analysis");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // the analysis stops at this depth (or at the end of the game)
+    private static final int ANALYSIS_MAX_DEPTH = 20;
+
     // Game constants
     public static final int BOARD_WIDTH = 800;
     public static final int BOARD_HEIGHT = 800;
-    public static final int GRID_SIZE = 8; // number of rows and columns
-    public static final int CELL_SIZE = BOARD_WIDTH / GRID_SIZE; // size of a single cell
 
     /**
      * Initializes the game board.
@@ -68,16 +150,83 @@ public class GameBoard extends JPanel {
         addMouseListener(new MouseAdapter() {
             @Override
             public void mouseClicked(MouseEvent e) {
-                int col = e.getX() / CELL_SIZE;
-                int row = e.getY() / CELL_SIZE;
+                // ignore clicks while it is the computer's turn
+                if (thinking || isComputerTurn()) {
+                    return;
+                }
+
+                int col = e.getX() / cellSize();
+                int row = e.getY() / cellSize();
 
                 if (othello.playTurn(col, row)) {
-                    updateStatus();
-                    updatePieceCount();
-                    repaint();
+                    moveChanged();
                 }
             }
         });
+
+        // each tick of the flip animation repaints only the discs turning
+        animation = new Timer(ANIMATION_DELAY, e -> {
+            animationFrame++;
+            if (animationFrame >= ANIMATION_FRAMES) {
+                ((Timer) e.getSource()).stop();
+                long done = animating;
+                animating = 0;
+                repaintCells(done);
+            } else {
+                repaintCells(animating);
+            }
+        });
+
+        // Ctrl-Z / Ctrl-Y undo and redo, wherever the focus is in the window
+        bindKey(KeyEvent.VK_Z, "undo", this::undo);
+        bindKey(KeyEvent.VK_Y, "redo", this::redo);
+    }
+
+    private void bindKey(int key, String name, Runnable action) {
+        getInputMap(WHEN_IN_FOCUSED_WINDOW).put(
+                KeyStroke.getKeyStroke(key, InputEvent.CTRL_DOWN_MASK), name);
+        getActionMap().put(name, new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                action.run();
+            }
+        });
+    }
+
+    /**
+     * undo takes back the last move (see Othello.undo). Against the
+     * computer, moves are taken back until it is a human's turn again, so
+     * the human gets their own move back rather than the computer's reply.
+     */
+    public void undo() {
+        // drop any search still running for the position being undone
+        stopComputerMove();
+        while (othello.undo() && isComputerTurn()) {
+            continue;
+        }
+        moveChanged();
+    }
+
+    /**
+     * redo plays again the moves taken back with undo, up to the next
+     * human move (see Othello.redo).
+     */
+    public void redo() {
+        stopComputerMove();
+        while (othello.redo() && isComputerTurn()) {
+            continue;
+        }
+        moveChanged();
+    }
+
+    // moveChanged updates the labels and board after a move, undo or redo
+    private void moveChanged() {
+        updateStatus();
+        updatePieceCount();
+        updateHints();
+        restartAnalysis();
+        repaintChanges();
+        playComputerMove();
     }
 
     /**
@@ -90,13 +239,274 @@ public class GameBoard extends JPanel {
         status.setText("Player 1's Turn");
 
         // update piece count
-        player1Count.setText("Player 1 (Black) Pieces: 2");
-        player2Count.setText("Player 2 (Gray) Pieces: 2");
+        updatePieceCount();
 
-        repaint();
+        updateHints();
+        restartAnalysis();
+        repaintChanges();
 
         // Makes sure this component has keyboard/mouse focus
         requestFocusInWindow();
+
+        // drop any search still running for the old game
+        stopComputerMove();
+        playComputerMove();
+    }
+
+    /**
+     * setBoardSize starts a new game on a size x size board (see
+     * Othello.setSize). The computer players, analysis and opening book
+     * only play on 8x8 boards, so on other sizes both sides are human.
+     */
+    public void setBoardSize(int size) {
+        othello.setSize(size);
+        reset();
+    }
+
+    // cellSize returns the width and height of one cell of the board
+    private int cellSize() {
+        return BOARD_WIDTH / othello.getSize();
+    }
+
+    /**
+     * saveGame saves the game being played (see Othello.saveGame).
+     */
+    public void saveGame(String fileName) throws IOException {
+        othello.saveGame(fileName);
+    }
+
+    /**
+     * loadGame loads a saved game into the board and carries on playing
+     * it from there (see Othello.loadGame).
+     */
+    public void loadGame(String fileName) throws IOException {
+        othello.loadGame(fileName);
+
+        // drop any search still running for the old game
+        stopComputerMove();
+        updateStatus();
+        updatePieceCount();
+        updateHints();
+        restartAnalysis();
+        repaintChanges();
+        requestFocusInWindow();
+        playComputerMove();
+    }
+
+    /**
+     * setComputerPlayer makes one side computer-controlled.
+     *
+     * @param player 1 for Player 1 (Black), 2 for Player 2 (Gray)
+     * @param computer the computer player, or null to hand the side back
+     *                 to a human. The player it replaces is closed.
+     */
+    public void setComputerPlayer(int player, ComputerPlayer computer) {
+        ComputerPlayer old = computers[player];
+        computers[player] = computer;
+        if (old != null && old != computer) {
+            // drop any move the old player is still searching for, then free its threads
+            stopComputerMove();
+            old.close();
+        }
+        restartAnalysis();
+        repaintChanges();
+        playComputerMove();
+    }
+
+    /**
+     * setShowHints turns the move hints on or off: a dot on every valid
+     * move, with the moves from the opening book (if any) in green along
+     * with how often they won.
+     */
+    public void setShowHints(boolean showHints) {
+        this.showHints = showHints;
+        updateHints();
+        repaintChanges();
+    }
+
+    /**
+     * setShowAnalysis turns the analysis overlay on or off: every valid
+     * move shows its score from a search that keeps getting deeper in the
+     * background while it is a human's turn (clicks are never held up).
+     * The best move's score is in blue.
+     */
+    public void setShowAnalysis(boolean showAnalysis) {
+        this.showAnalysis = showAnalysis;
+        restartAnalysis();
+        repaintChanges();
+    }
+
+    /**
+     * setAnimateFlips turns the flip animation on or off: discs that change
+     * colour turn over in a few frames instead of changing at once.
+     */
+    public void setAnimateFlips(boolean animateFlips) {
+        this.animateFlips = animateFlips;
+    }
+
+    /**
+     * setOpeningBook sets the book the hints are read from (null for none).
+     */
+    public void setOpeningBook(OpeningBook book) {
+        this.book = book;
+        updateHints();
+        repaint();
+    }
+
+    /* updateHints works out the hints for the current position: every
+    valid move, and the book moves among them. On 8x8 boards the moves
+    come from the move bitboard; other sizes ask about every cell.
+     */
+    private void updateHints() {
+        hintCells = NO_HINTS;
+        bookHints = List.of();
+        if (!showHints || othello.getGameStatus()) {
+            return;
+        }
+        int size = othello.getSize();
+        if (size != Othello.STANDARD_SIZE) {
+            int player = othello.getCurrentPlayer() ? 1 : 2;
+            int[] cells = new int[size * size];
+            int count = 0;
+            for (int row = 0; row < size; row++) {
+                for (int col = 0; col < size; col++) {
+                    if (othello.isValid(col, row, player)) {
+                        cells[count++] = row * size + col;
+                    }
+                }
+            }
+            hintCells = Arrays.copyOf(cells, count);
+            return;
+        }
+        long moves = othello.getLegalMoves();
+        hintCells = new int[Long.bitCount(moves)];
+        for (int i = 0; i < hintCells.length; i++, moves &= moves - 1) {
+            hintCells[i] = Long.numberOfTrailingZeros(moves);
+        }
+        if (book != null) {
+            List<OpeningBook.Entry> entries = new ArrayList<>();
+            for (OpeningBook.Entry entry : book.lookup(othello.toPosition())) {
+                if ((othello.getLegalMoves() & (1L << entry.getMove())) != 0) {
+                    entries.add(entry);
+                }
+            }
+            bookHints = entries;
+        }
+    }
+
+    /* restartAnalysis stops the analysis of the previous position (if
+    any) and starts one for the current position. Called on the event
+    thread whenever the position changes.
+     */
+    private void restartAnalysis() {
+        analysisGeneration++;
+        moveScores = null;
+        if (analysis != null) {
+            analysis.stop();
+            analysis = null;
+        }
+        // a computer player's search is already using the processor
+        if (!showAnalysis || othello.getGameStatus() || isComputerTurn()
+                || othello.getSize() != Othello.STANDARD_SIZE) {
+            return;
+        }
+        Position position = othello.toPosition();
+        int searchGeneration = analysisGeneration;
+        Search search = new Search(analysisTable);
+        analysis = search;
+        analysisExecutor.execute(() -> analyse(search, position, searchGeneration));
+    }
+
+    /* analyse runs on the analysis thread: it scores the moves one depth
+    deeper at a time and hands every finished depth to the event thread.
+     */
+    private void analyse(Search search, Position position, int searchGeneration) {
+        analysisTable.newSearch();
+        int empties = Long.bitCount(~(position.getBlack() | position.getWhite()));
+        for (int depth = 1; depth <= Math.min(ANALYSIS_MAX_DEPTH, empties); depth++) {
+            int[] scores = search.scoreMoves(position, depth);
+            if (scores == null) {
+                return;
+            }
+            int scoredDepth = depth;
+            SwingUtilities.invokeLater(() -> showScores(searchGeneration, scoredDepth, scores));
+        }
+    }
+
+    // showScores puts finished analysis results on the board
+    private void showScores(int searchGeneration, int depth, int[] scores) {
+        if (searchGeneration != analysisGeneration) {
+            return;
+        }
+        moveScores = scores;
+        analysisDepth = depth;
+        analysedCells = othello.getLegalMoves();
+        repaintCells(analysedCells);
+    }
+
+    // the computer players only play 8x8 games
+    private boolean isComputerTurn() {
+        return othello.getSize() == Othello.STANDARD_SIZE
+                && computers[othello.getCurrentPlayer() ? 1 : 2] != null;
+    }
+
+    /* playComputerMove - if it is a computer player's turn, search
+    for its move on a background thread (so the window stays responsive)
+    and play it on the event thread once the search is done.
+     */
+    private void playComputerMove() {
+        if (thinking || othello.getGameStatus() || !isComputerTurn()) {
+            return;
+        }
+        ComputerPlayer computer = computers[othello.getCurrentPlayer() ? 1 : 2];
+        Position position = othello.toPosition();
+        int searchGeneration = generation;
+        thinking = true;
+        status.setText("Computer is thinking...");
+
+        searchingPlayer = computer;
+        computerMove = new SwingWorker<Integer, Void>() {
+            @Override
+            protected Integer doInBackground() {
+                return computer.chooseMove(position);
+            }
+
+            @Override
+            protected void done() {
+                if (searchGeneration != generation) {
+                    return;
+                }
+                thinking = false;
+                computerMove = null;
+                searchingPlayer = null;
+                int move;
+                try {
+                    move = get();
+                } catch (InterruptedException | ExecutionException e) {
+                    throw new IllegalStateException("Computer player failed", e);
+                }
+                othello.playTurn(move & 7, move >>> 3);
+                moveChanged();
+            }
+        };
+        computerMove.execute();
+    }
+
+    /* stopComputerMove drops the move a computer player is searching for,
+    if any. Its result is ignored once the generation has changed, and
+    the search itself is stopped so it does not hold on to the processor
+    (and, with several threads, its helpers) for the rest of its budget.
+     */
+    private void stopComputerMove() {
+        generation++;
+        thinking = false;
+        if (computerMove != null) {
+            // cancel first: a search just starting sees the interrupt (see ComputerPlayer.stop)
+            computerMove.cancel(true);
+            searchingPlayer.stop();
+            computerMove = null;
+            searchingPlayer = null;
+        }
     }
 
     /**
@@ -120,69 +530,234 @@ public class GameBoard extends JPanel {
     }
 
     /* updatePieceCount() - if a move has been successful,
-    update the number of piece for the respective player
-    Problem: How do you verify if a move is successful?
+    update the number of piece for the respective player.
+    The model keeps the counts up to date, so no board scan is needed.
      */
     private void updatePieceCount() {
-        int player1Pieces = 0;
-        int player2Pieces = 0;
-
-        for (int row = 0; row < GRID_SIZE; row++) {
-            for (int col = 0; col < GRID_SIZE; col++) {
-                if (othello.getCell(row, col) == 1) {
-                    player1Pieces++;
-                } else if (othello.getCell(row, col) == 2) {
-                    player2Pieces++;
-                }
-            }
+        player1Count.setText("Player 1 (Black) Pieces: " + othello.getPieceCount(1));
+        player2Count.setText("Player 2 (Gray) Pieces: " + othello.getPieceCount(2));
+    }
+
+    /* repaintChanges repaints the cells that differ from what the board
+    last showed: discs placed, flipped or taken back, and hints that came
+    or went. Flipped discs are animated if the animation is on.
+     */
+    private void repaintChanges() {
+        if (othello.getSize() != Othello.STANDARD_SIZE || shownSize != Othello.STANDARD_SIZE) {
+            // the changes are found with bitboards, which only 8x8 boards have
+            shownSize = othello.getSize();
+            shownBlack = 0;
+            shownWhite = 0;
+            shownHints = 0;
+            animation.stop();
+            animating = 0;
+            repaint();
+            return;
         }
+        Position position = othello.toPosition();
+        long black = position.getBlack();
+        long white = position.getWhite();
+        long hints = 0;
+        for (int cell : hintCells) {
+            hints |= 1L << cell;
+        }
+
+        // discs that were on the board before and after, but changed colour
+        long flipped = (black & shownWhite) | (white & shownBlack);
+        long changed = (black ^ shownBlack) | (white ^ shownWhite) | (hints ^ shownHints);
+        shownBlack = black;
+        shownWhite = white;
+        shownHints = hints;
+        // scores of an analysis that was dropped
+        if (moveScores == null) {
+            changed |= analysedCells;
+            analysedCells = 0;
+        }
+
+        // a new change ends the animation of the previous one
+        animation.stop();
+        changed |= animating;
+        animating = 0;
+        if (animateFlips && flipped != 0 && isShowing()) {
+            animating = flipped;
+            animationFrame = 0;
+            animation.start();
+        }
+        repaintCells(changed);
+    }
 
-        player1Count.setText("Player 1 (Black) Pieces: " + player1Pieces);
-        player2Count.setText("Player 2 (Gray) Pieces: " + player2Pieces);
+    /* repaintCells paints the given cells right away, one small rectangle
+    each, rather than one repaint of the rectangle that covers them all
+    (which is what Swing would merge separate repaint calls into). When
+    many cells change, as on reset, the whole board is repainted once.
+     */
+    private void repaintCells(long cells) {
+        if (Long.bitCount(cells) > MAX_CELL_REPAINTS || !isShowing()) {
+            repaint();
+            return;
+        }
+        int cellSize = cellSize();
+        for (; cells != 0; cells &= cells - 1) {
+            int sq = Long.numberOfTrailingZeros(cells);
+            paintImmediately((sq & 7) * cellSize, (sq >>> 3) * cellSize, cellSize + 1,
+                    cellSize + 1);
+        }
     }
 
     /**
      * Draws the game board.
-     * 
-     * There are many ways to draw a game board. This approach
-     * will not be sufficient for most games, because it is not
-     * modular. All of the logic for drawing the game board is
-     * in this method, and it does not take advantage of helper
-     * methods. Consider breaking up your paintComponent logic
-     * into multiple methods or classes, like Mushroom of Doom.
+     *
+     * The grid never changes, so it is drawn once into an image and copied
+     * from there. Only the cells inside the area being repainted (usually
+     * a single cell, see repaintCells) have their discs drawn.
      */
     @Override
     public void paintComponent(Graphics g) {
         super.paintComponent(g);
+        drawGrid((Graphics2D) g);
 
-        // draw grid lines
-        g.setColor(Color.BLACK);
-        for (int i = 0; i <= GRID_SIZE; i++) {
-            // draw the vertical lines
-            g.drawLine(i * CELL_SIZE, 0, i * CELL_SIZE, BOARD_HEIGHT);
-            // draw horizontal lines
-            g.drawLine(0, i * CELL_SIZE, BOARD_WIDTH, i * CELL_SIZE);
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(0, 0, BOARD_WIDTH, BOARD_HEIGHT);
         }
+        int size = othello.getSize();
+        int cellSize = cellSize();
+        int firstCol = Math.max(0, clip.x / cellSize);
+        int lastCol = Math.min(size - 1, (clip.x + clip.width) / cellSize);
+        int firstRow = Math.max(0, clip.y / cellSize);
+        int lastRow = Math.min(size - 1, (clip.y + clip.height) / cellSize);
 
         //draw the pieces
-        for (int row = 0; row < GRID_SIZE; row++) {
-            for (int col = 0; col < GRID_SIZE; col++) {
-                int cell = othello.getCell(col, row);
-                if (cell == 1) {
-                    g.setColor(Color.BLACK);
-                    g.fillOval(col * CELL_SIZE,
-                            row * CELL_SIZE,
-                            CELL_SIZE,
-                            CELL_SIZE);
-                } else if (cell == 2) {
-                    g.setColor(Color.GRAY);
-                    g.fillOval(col * CELL_SIZE,
-                            row * CELL_SIZE,
-                            CELL_SIZE,
-                            CELL_SIZE);
-                }
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int col = firstCol; col <= lastCol; col++) {
+                drawPiece(g, col, row);
+            }
+        }
+
+        drawHints(g, firstCol, lastCol, firstRow, lastRow);
+        if (moveScores != null) {
+            drawScores(g);
+        }
+    }
+
+    /* drawGrid copies the grid image onto the board, drawing it first if
+    needed. The image is made at the screen's scale (so it stays sharp on
+    high-DPI screens) and drawn again if that scale or the board size
+    changes.
+     */
+    private void drawGrid(Graphics2D g) {
+        AffineTransform transform = g.getTransform();
+        int width = (int) Math.ceil(BOARD_WIDTH * transform.getScaleX());
+        int height = (int) Math.ceil(BOARD_HEIGHT * transform.getScaleY());
+        int size = othello.getSize();
+        if (grid == null || grid.getWidth() != width || grid.getHeight() != height
+                || gridSize != size) {
+            gridSize = size;
+            int cellSize = cellSize();
+            grid = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D image = grid.createGraphics();
+            image.scale(transform.getScaleX(), transform.getScaleY());
+            // draw grid lines
+            image.setColor(Color.BLACK);
+            for (int i = 0; i <= size; i++) {
+                // draw the vertical lines
+                image.drawLine(i * cellSize, 0, i * cellSize, size * cellSize);
+                // draw horizontal lines
+                image.drawLine(0, i * cellSize, size * cellSize, i * cellSize);
+            }
+            image.dispose();
+        }
+        g.drawImage(grid, 0, 0, BOARD_WIDTH, BOARD_HEIGHT, null);
+    }
+
+    /* drawPiece draws the disc on one cell, if any. A disc being flipped
+    is drawn narrower and narrower in its old colour for the first half
+    of the animation, then wider and wider in its new colour.
+     */
+    private void drawPiece(Graphics g, int col, int row) {
+        int cell = othello.getCell(col, row);
+        if (cell == 0) {
+            return;
+        }
+        int cellSize = cellSize();
+        int width = cellSize;
+        // only 8x8 boards are animated
+        if (animating != 0 && (animating & Bitboard.square(col, row)) != 0) {
+            int half = ANIMATION_FRAMES / 2;
+            if (animationFrame < half) {
+                cell = 3 - cell;
+                width = cellSize * (half - animationFrame) / half;
+            } else {
+                width = cellSize * (animationFrame - half + 1) / half;
+            }
+        }
+        g.setColor(cell == 1 ? Color.BLACK : Color.GRAY);
+        g.fillOval(col * cellSize + (cellSize - width) / 2, row * cellSize, width, cellSize);
+    }
+
+    /* drawHints puts a small dot on every valid move in the given columns
+    and rows. Moves found in the opening book get a bigger green dot and
+    their score (how often the move has won) instead.
+     */
+    private void drawHints(Graphics g, int firstCol, int lastCol, int firstRow, int lastRow) {
+        int size = othello.getSize();
+        int cellSize = cellSize();
+        int dot = cellSize / 6;
+        g.setColor(Color.LIGHT_GRAY);
+        for (int cell : hintCells) {
+            int col = cell % size;
+            int row = cell / size;
+            if (col >= firstCol && col <= lastCol && row >= firstRow && row <= lastRow) {
+                g.fillOval(col * cellSize + (cellSize - dot) / 2,
+                        row * cellSize + (cellSize - dot) / 2, dot, dot);
+            }
+        }
+
+        dot = cellSize / 3;
+        for (OpeningBook.Entry entry : bookHints) {
+            int col = entry.getMove() & 7;
+            int row = entry.getMove() >>> 3;
+            if (col < firstCol || col > lastCol || row < firstRow || row > lastRow) {
+                continue;
             }
+            int x = col * cellSize;
+            int y = row * cellSize;
+            g.setColor(BOOK_COLOR);
+            g.fillOval(x + (cellSize - dot) / 2, y + (cellSize - dot) / 2, dot, dot);
+            g.setColor(Color.BLACK);
+            g.drawString(Math.round(entry.getScore() * 100) + "%", x + 4, y + cellSize - 6);
+        }
+    }
+
+    /* drawScores writes the analysis score of every valid move in the top
+    left corner of its cell, with the search depth after it. The best
+    score is drawn in blue.
+     */
+    private void drawScores(Graphics g) {
+        int cellSize = cellSize();
+        int best = Integer.MIN_VALUE;
+        for (long moves = analysedCells; moves != 0; moves &= moves - 1) {
+            best = Math.max(best, moveScores[Long.numberOfTrailingZeros(moves)]);
+        }
+        for (long moves = analysedCells; moves != 0; moves &= moves - 1) {
+            int sq = Long.numberOfTrailingZeros(moves);
+            int score = moveScores[sq];
+            g.setColor(score == best ? Color.BLUE : Color.DARK_GRAY);
+            g.drawString(formatScore(score) + " (" + analysisDepth + ")",
+                    (sq & 7) * cellSize + 4, (sq >>> 3) * cellSize + 16);
+        }
+    }
+
+    /* formatScore shows a search score: finished games as W, L or D with
+    the final disc difference, anything else as the evaluation itself.
+     */
+    private static String formatScore(int score) {
+        if (score >= Search.WIN) {
+            return "W+" + (score - Search.WIN);
+        } else if (score <= -Search.WIN) {
+            return "L" + (score + Search.WIN);
         }
+        return String.format("%+d", score);
     }
 
     /**
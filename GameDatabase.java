@@ -0,0 +1,561 @@
+package org.cis1200.othello;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * GameDatabase stores game records and finds them again by position.
+ *
+ * A database is a directory with:
+ * 1. games.dat: every game as a GameRecord, appended one after another
+ * 2. offsets.dat: where each game starts in games.dat (8 bytes per game;
+ * a game's id is its number in this file)
+ * 3. index-NNNNNN.dat: index segments, one per batch of added games
+ *
+ * An index segment lists every position of every game in its batch,
+ * sorted by Zobrist hash, 16 bytes per entry (big-endian):
+ * hash (8), game id (4), ply (2), move played from there (1, 0xFF if
+ * none), result for the player to move (1: 0 loss, 1 draw, 2 win).
+ * Because the move and result are in the index, move statistics never
+ * have to read the games themselves.
+ *
+ * The hash and move are those of the position's canonical form (see
+ * Symmetry), so a query finds the games that reached the position in any
+ * of its 8 rotations and reflections.
+ *
+ * Segments are memory-mapped and searched with a binary search each, so
+ * queries take milliseconds however many games there are. Adding games
+ * never rewrites anything: add collects a batch and commit appends the
+ * games and writes one new segment. compact merges all segments into one
+ * when there are too many.
+ *
+ * Queries may run on any number of threads; adding games is for one
+ * writer at a time (the methods that change the database synchronize).
+ *
+ * java org.cis1200.othello.GameDatabase dir add game-file...
+ * java org.cis1200.othello.GameDatabase dir query [moves]
+ * java org.cis1200.othello.GameDatabase dir compact
+ */
+public class GameDatabase implements Closeable {
+
+    static final int ENTRY_BYTES = 16;
+    // entries per mapped chunk: 2^26 entries = 1 GB
+    private static final int CHUNK_SHIFT = 26;
+    private static final int CHUNK_ENTRIES = 1 << CHUNK_SHIFT;
+
+    private static final int NO_MOVE = 0xFF;
+    private static final int LOSS = 0;
+    private static final int DRAW = 1;
+    private static final int WIN = 2;
+
+    /**
+     * Segment is one mapped index file.
+     */
+    private static final class Segment {
+        final Path file;
+        final long size;
+        final MappedByteBuffer[] chunks;
+
+        Segment(Path file) throws IOException {
+            this.file = file;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                long bytes = channel.size();
+                if (bytes % ENTRY_BYTES != 0) {
+                    throw new IOException("Index segment is damaged: " + file);
+                }
+                size = bytes / ENTRY_BYTES;
+                chunks = new MappedByteBuffer[(int) ((size + CHUNK_ENTRIES - 1) >>> CHUNK_SHIFT)];
+                for (int i = 0; i < chunks.length; i++) {
+                    long start = (long) i * CHUNK_ENTRIES * ENTRY_BYTES;
+                    chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                            Math.min(bytes - start, (long) CHUNK_ENTRIES * ENTRY_BYTES));
+                }
+            }
+        }
+
+        long hash(long i) {
+            return chunks[(int) (i >>> CHUNK_SHIFT)].getLong(offset(i));
+        }
+
+        // payload: game id (32) | ply (16) | move (8) | result (8)
+        long payload(long i) {
+            return chunks[(int) (i >>> CHUNK_SHIFT)].getLong(offset(i) + 8);
+        }
+
+        // offset of entry i within its chunk
+        private static int offset(long i) {
+            return (int) (i & (CHUNK_ENTRIES - 1)) * ENTRY_BYTES;
+        }
+
+        // first entry whose hash is >= the given hash
+        long lowerBound(long hash) {
+            long lo = 0;
+            long hi = size;
+            while (lo < hi) {
+                long mid = (lo + hi) >>> 1;
+                if (hash(mid) < hash) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+    }
+
+    private final Path directory;
+    private final Path gamesFile;
+    private final Path offsetsFile;
+    private volatile Segment[] segments;
+    private int nextSegment;
+
+    // the batch being collected by add: games, and (hash, payload) entries
+    private final List<ByteBuffer> pendingGames = new ArrayList<>();
+    private long[] pendingHashes = new long[1024];
+    private long[] pendingPayloads = new long[1024];
+    private int pendingEntries;
+
+    private GameDatabase(Path directory) throws IOException {
+        this.directory = directory;
+        this.gamesFile = directory.resolve("games.dat");
+        this.offsetsFile = directory.resolve("offsets.dat");
+        loadSegments();
+    }
+
+    /**
+     * open opens the database in a directory, creating it if needed.
+     */
+    public static GameDatabase open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        return new GameDatabase(directory);
+    }
+
+    private void loadSegments() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "index-*.dat")) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        files.sort(null);
+        Segment[] loaded = new Segment[files.size()];
+        for (int i = 0; i < loaded.length; i++) {
+            loaded[i] = new Segment(files.get(i));
+        }
+        segments = loaded;
+        nextSegment = 0;
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            int number = Integer.parseInt(name.substring(6, name.length() - 4));
+            nextSegment = Math.max(nextSegment, number + 1);
+        }
+    }
+
+    /**
+     * getGameCount returns the number of games stored (committed).
+     */
+    public int getGameCount() throws IOException {
+        return Files.exists(offsetsFile) ? (int) (Files.size(offsetsFile) / Long.BYTES) : 0;
+    }
+
+    /**
+     * add adds a game (from its start position and move history) to the
+     * current batch. Nothing is written until commit.
+     */
+    public synchronized void add(Othello game) throws IOException {
+        int id = getGameCount() + pendingGames.size();
+        byte[] moves = game.getMoveHistory();
+
+        // replay the game to list every position it went through
+        Othello replay = new Othello();
+        replay.setPosition(game.getStartPosition());
+        int start = pendingEntries;
+        boolean[] player1 = new boolean[moves.length + 1];
+        for (int ply = 0; ply <= moves.length; ply++) {
+            int move = ply < moves.length ? moves[ply] & 0xFF : NO_MOVE;
+            player1[ply] = replay.getCurrentPlayer();
+            Position position = replay.toPosition();
+            int stored = move == NO_MOVE ? NO_MOVE
+                    : Symmetry.canonicalMove(move, position.canonicalTransforms());
+            addEntry(position.canonicalHash(),
+                    ((long) id << 32) | ((long) ply << 16) | ((long) stored << 8));
+            if (move != NO_MOVE && !replay.playTurn(move & 7, move >>> 3)) {
+                pendingEntries = start;
+                throw new IllegalArgumentException("Game has an invalid move at turn " + (ply + 1));
+            }
+        }
+
+        // unfinished games are scored by the discs on the board
+        int diff = replay.getPieceCount(1) - replay.getPieceCount(2);
+        for (int i = start; i < pendingEntries; i++) {
+            int mover = player1[i - start] ? diff : -diff;
+            pendingPayloads[i] |= mover > 0 ? WIN : mover < 0 ? LOSS : DRAW;
+        }
+        pendingGames.add(GameRecord.encode(game));
+    }
+
+    private void addEntry(long hash, long payload) {
+        if (pendingEntries == pendingHashes.length) {
+            pendingHashes = Arrays.copyOf(pendingHashes, pendingEntries * 2);
+            pendingPayloads = Arrays.copyOf(pendingPayloads, pendingEntries * 2);
+        }
+        pendingHashes[pendingEntries] = hash;
+        pendingPayloads[pendingEntries] = payload;
+        pendingEntries++;
+    }
+
+    /**
+     * commit writes the current batch: the games are appended, then the
+     * batch's index segment is written and made visible to queries.
+     */
+    public synchronized void commit() throws IOException {
+        if (pendingGames.isEmpty()) {
+            return;
+        }
+        try (FileChannel games = FileChannel.open(gamesFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+             FileChannel offsets = FileChannel.open(offsetsFile, StandardOpenOption.CREATE,
+                     StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            long offset = games.size();
+            ByteBuffer offsetBuffer = ByteBuffer.allocate(pendingGames.size() * Long.BYTES);
+            for (ByteBuffer record : pendingGames) {
+                offsetBuffer.putLong(offset);
+                offset += record.remaining();
+            }
+            writeFully(games, pendingGames.toArray(new ByteBuffer[0]));
+            offsetBuffer.flip();
+            writeFully(offsets, offsetBuffer);
+        }
+
+        sort(pendingHashes, pendingPayloads, 0, pendingEntries - 1);
+        Path segment = directory.resolve(String.format("index-%06d.dat", nextSegment));
+        writeSegment(segment, new EntrySource() {
+            private int i;
+
+            @Override
+            public boolean next(long[] entry) {
+                if (i == pendingEntries) {
+                    return false;
+                }
+                entry[0] = pendingHashes[i];
+                entry[1] = pendingPayloads[i];
+                i++;
+                return true;
+            }
+        });
+
+        pendingGames.clear();
+        pendingEntries = 0;
+        loadSegments();
+    }
+
+    /**
+     * compact merges all index segments into one, so queries have only
+     * one binary search to do.
+     */
+    public synchronized void compact() throws IOException {
+        Segment[] old = segments;
+        if (old.length < 2) {
+            return;
+        }
+        long[] next = new long[old.length];
+        Path merged = directory.resolve(String.format("index-%06d.dat", nextSegment));
+        writeSegment(merged, entry -> {
+            // take the smallest head of all segments
+            int best = -1;
+            for (int s = 0; s < old.length; s++) {
+                if (next[s] < old[s].size && (best < 0
+                        || compare(old[s], next[s], old[best], next[best]) < 0)) {
+                    best = s;
+                }
+            }
+            if (best < 0) {
+                return false;
+            }
+            entry[0] = old[best].hash(next[best]);
+            entry[1] = old[best].payload(next[best]);
+            next[best]++;
+            return true;
+        });
+        for (Segment segment : old) {
+            Files.delete(segment.file);
+        }
+        loadSegments();
+    }
+
+    private static int compare(Segment a, long i, Segment b, long j) {
+        int c = Long.compare(a.hash(i), b.hash(j));
+        return c != 0 ? c : Long.compare(a.payload(i), b.payload(j));
+    }
+
+    // EntrySource hands out (hash, payload) pairs in sorted order
+    private interface EntrySource {
+        boolean next(long[] entry) throws IOException;
+    }
+
+    // writeSegment writes a segment to a temp file and then moves it in place
+    private void writeSegment(Path file, EntrySource source) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(ENTRY_BYTES * 4096);
+            long[] entry = new long[2];
+            while (source.next(entry)) {
+                if (!buffer.hasRemaining()) {
+                    buffer.flip();
+                    writeFully(out, buffer);
+                    buffer.clear();
+                }
+                buffer.putLong(entry[0]).putLong(entry[1]);
+            }
+            buffer.flip();
+            writeFully(out, buffer);
+        }
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+        nextSegment++;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer... buffers) throws IOException {
+        for (ByteBuffer buffer : buffers) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * findGames returns the id of every game that reached the position
+     * with this canonical hash (each id once, in increasing order).
+     */
+    public int[] findGames(long hash) {
+        int[] ids = new int[16];
+        int count = 0;
+        for (Segment segment : segments) {
+            long end = segment.size;
+            for (long i = segment.lowerBound(hash); i < end && segment.hash(i) == hash; i++) {
+                if (count == ids.length) {
+                    ids = Arrays.copyOf(ids, count * 2);
+                }
+                ids[count++] = (int) (segment.payload(i) >>> 32);
+            }
+        }
+        // a game can pass through the same position only once, but keep ids unique anyway
+        int[] result = Arrays.copyOf(ids, count);
+        Arrays.sort(result);
+        return Arrays.stream(result).distinct().toArray();
+    }
+
+    /**
+     * findGames returns the id of every game that reached the position or
+     * one of its symmetric images.
+     */
+    public int[] findGames(Position position) {
+        return findGames(position.canonicalHash());
+    }
+
+    /**
+     * moveStatistics returns, for every move played from the position, how
+     * many games played it and how they went for the player making it.
+     * The moves are those of the position itself: in a symmetric position
+     * the moves that are the same up to symmetry share their results.
+     */
+    public List<OpeningBook.Entry> moveStatistics(Position position) {
+        long hash = position.canonicalHash();
+        int transforms = position.canonicalTransforms();
+        int[] games = new int[64];
+        int[] wins = new int[64];
+        int[] draws = new int[64];
+        for (Segment segment : segments) {
+            long end = segment.size;
+            for (long i = segment.lowerBound(hash); i < end && segment.hash(i) == hash; i++) {
+                long payload = segment.payload(i);
+                int move = (int) (payload >>> 8) & 0xFF;
+                if (move == NO_MOVE) {
+                    continue;
+                }
+                int result = (int) payload & 0xFF;
+                long original = Symmetry.originalMoves(move, transforms);
+                for (; original != 0; original &= original - 1) {
+                    int sq = Long.numberOfTrailingZeros(original);
+                    games[sq]++;
+                    wins[sq] += result == WIN ? 1 : 0;
+                    draws[sq] += result == DRAW ? 1 : 0;
+                }
+            }
+        }
+        List<OpeningBook.Entry> moves = new ArrayList<>();
+        for (int sq = 0; sq < 64; sq++) {
+            if (games[sq] > 0) {
+                moves.add(new OpeningBook.Entry(sq, games[sq], wins[sq], draws[sq]));
+            }
+        }
+        return moves;
+    }
+
+    /**
+     * readGame loads a stored game into the given Othello model.
+     */
+    public void readGame(int id, Othello game) throws IOException {
+        try (FileChannel offsets = FileChannel.open(offsetsFile, StandardOpenOption.READ);
+             FileChannel games = FileChannel.open(gamesFile, StandardOpenOption.READ)) {
+            ByteBuffer offset = ByteBuffer.allocate(Long.BYTES);
+            readFully(offsets, offset, (long) id * Long.BYTES);
+            long start = offset.getLong(0);
+            // a record is at most a header, a start position, 255 moves and a checksum
+            ByteBuffer record = ByteBuffer.allocate((int) Math.min(300, games.size() - start));
+            readFully(games, record, start);
+            record.flip();
+            GameRecord.decode(record, game);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Game database is truncated");
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        commit();
+    }
+
+    // quicksort of parallel arrays by (hash, payload)
+    private static void sort(long[] hashes, long[] payloads, int lo, int hi) {
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            long pivotHash = hashes[mid];
+            long pivotPayload = payloads[mid];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (hashes[i] < pivotHash
+                        || (hashes[i] == pivotHash && payloads[i] < pivotPayload)) {
+                    i++;
+                }
+                while (hashes[j] > pivotHash
+                        || (hashes[j] == pivotHash && payloads[j] > pivotPayload)) {
+                    j--;
+                }
+                if (i <= j) {
+                    long h = hashes[i];
+                    hashes[i] = hashes[j];
+                    hashes[j] = h;
+                    long p = payloads[i];
+                    payloads[i] = payloads[j];
+                    payloads[j] = p;
+                    i++;
+                    j--;
+                }
+            }
+            // recurse into the smaller half, loop on the larger one
+            if (j - lo < hi - i) {
+                sort(hashes, payloads, lo, j);
+                lo = i;
+            } else {
+                sort(hashes, payloads, i, hi);
+                hi = j;
+            }
+        }
+    }
+
+    /**
+     * addGames adds every game in a file: either GameRecords one after
+     * another, or text transcripts one per line (see OpeningBookBuilder).
+     *
+     * @return the number of games added
+     */
+    public int addGames(Path file) throws IOException {
+        int added = 0;
+        if (GameRecord.isGameRecord(file)) {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+            while (buffer.hasRemaining()) {
+                Othello game = new Othello();
+                GameRecord.decode(buffer, game);
+                add(game);
+                added++;
+            }
+            return added;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                Othello game = new Othello();
+                for (byte move : GameRecord.parseTranscript(line)) {
+                    if (!game.playTurn(move & 7, (move & 0xFF) >>> 3)) {
+                        throw new IOException("Invalid move in game: " + line);
+                    }
+                }
+                add(game);
+                added++;
+            }
+        }
+        return added;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: GameDatabase dir add game-file...");
+            System.err.println("       GameDatabase dir query [moves]");
+            System.err.println("       GameDatabase dir compact");
+            System.exit(2);
+        }
+        try (GameDatabase db = GameDatabase.open(Paths.get(args[0]))) {
+            if (args[1].equals("add")) {
+                for (int i = 2; i < args.length; i++) {
+                    long start = System.nanoTime();
+                    int added = db.addGames(Paths.get(args[i]));
+                    db.commit();
+                    System.out.printf("%s: %d games in %d ms%n", args[i], added,
+                            (System.nanoTime() - start) / 1_000_000);
+                }
+            } else if (args[1].equals("compact")) {
+                db.compact();
+            } else if (args[1].equals("query")) {
+                Othello game = new Othello();
+                if (args.length > 2) {
+                    for (byte move : GameRecord.parseTranscript(args[2])) {
+                        game.playTurn(move & 7, (move & 0xFF) >>> 3);
+                    }
+                }
+                long start = System.nanoTime();
+                Position position = game.toPosition();
+                int[] games = db.findGames(position);
+                List<OpeningBook.Entry> moves = db.moveStatistics(position);
+                long micros = (System.nanoTime() - start) / 1000;
+                System.out.println(games.length + " games reach this position (" + micros + " us)");
+                for (OpeningBook.Entry e : moves) {
+                    System.out.printf("%s  %d games  +%d =%d  %.1f%%%n",
+                            Bitboard.squareName(e.getMove()), e.getGames(), e.getWins(),
+                            e.getDraws(), e.getScore() * 100);
+                }
+            } else {
+                System.err.println("Unknown command: " + args[1]);
+                System.exit(2);
+            }
+            System.out.println(db.getGameCount() + " games, "
+                    + db.segments.length + " index segments");
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package org.cis1200.othello;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * GameRecord is the binary format games are saved in: a short header, the
+ * full move sequence at one byte per move, and a checksum. A finished
+ * game from the standard start takes at most 72 bytes.
+ *
+ * Layout (big-endian):
+ * 1. magic "OTHG" (4 bytes), version (1), flags (1), number of moves (2)
+ * 2. only if the flags say the game did not start from the standard
+ * position: Player 1's discs (8), Player 2's discs (8), player to move (1)
+ * 3. the moves, one byte each (square index r * 8 + c)
+ * 4. CRC-32 of everything before it (4)
+ *
+ * The position is not stored: reading a record replays the moves on the
+ * Othello model, which also checks that every move is valid.
+ */
+public final class GameRecord {
+
+    static final int MAGIC = 0x4F544847; // "OTHG"
+    static final byte VERSION = 1;
+    static final int HEADER_BYTES = 8;
+
+    // flag: the game starts from a custom position, stored after the header
+    private static final int CUSTOM_START = 1;
+    private static final int START_BYTES = 17;
+
+    private GameRecord() {
+    }
+
+    /**
+     * encode writes the game's record into a new buffer, ready to be read.
+     */
+    public static ByteBuffer encode(Othello game) {
+        byte[] moves = game.getMoveHistory();
+        Position start = game.getStartPosition();
+        boolean custom = !start.equals(Position.start());
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + (custom ? START_BYTES : 0)
+                + moves.length + Integer.BYTES);
+        buffer.putInt(MAGIC).put(VERSION).put((byte) (custom ? CUSTOM_START : 0))
+                .putShort((short) moves.length);
+        if (custom) {
+            buffer.putLong(start.getBlack()).putLong(start.getWhite())
+                    .put((byte) (start.getCurrentPlayer() ? 1 : 2));
+        }
+        buffer.put(moves);
+        buffer.putInt(checksum(buffer, 0, buffer.position()));
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * decode reads one record from the buffer (starting at its position,
+     * which ends up just after the record) and replays it on the game. The
+     * game is only changed once the whole record has been checked.
+     *
+     * @throws IOException if the record is damaged or has an invalid move
+     */
+    public static void decode(ByteBuffer buffer, Othello game) throws IOException {
+        int begin = buffer.position();
+        if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != MAGIC) {
+            throw new IOException("Not an Othello game record");
+        }
+        if (buffer.get() != VERSION) {
+            throw new IOException("Unsupported game record version");
+        }
+        int flags = buffer.get();
+        int count = buffer.getShort() & 0xFFFF;
+        boolean custom = (flags & CUSTOM_START) != 0;
+        int length = HEADER_BYTES + (custom ? START_BYTES : 0) + count;
+        if (buffer.remaining() < length - HEADER_BYTES + Integer.BYTES) {
+            throw new IOException("Game record is truncated");
+        }
+        if (buffer.getInt(begin + length) != checksum(buffer, begin, length)) {
+            throw new IOException("Game record checksum does not match");
+        }
+
+        Position start = Position.start();
+        if (custom) {
+            long black = buffer.getLong();
+            long white = buffer.getLong();
+            boolean player1 = buffer.get() == 1;
+            try {
+                start = new Position(black, white, player1);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Game record has an invalid start position", e);
+            }
+        }
+        // replay on a scratch game first, so a bad record leaves the game untouched
+        Othello replay = new Othello();
+        replay.setPosition(start);
+        byte[] moves = new byte[count];
+        buffer.get(moves);
+        for (int i = 0; i < count; i++) {
+            int sq = moves[i] & 0xFF;
+            if (sq >= 64 || !replay.playTurn(sq & 7, sq >>> 3)) {
+                throw new IOException("Game record has an invalid move at turn " + (i + 1));
+            }
+        }
+        // skip the checksum
+        buffer.getInt();
+
+        game.setPosition(start);
+        for (byte move : moves) {
+            game.playTurn(move & 7, (move & 0xFF) >>> 3);
+        }
+    }
+
+    /**
+     * parseTranscript turns a text game such as "f5d6c3d3" (square names,
+     * optionally separated by spaces) into one byte per move.
+     *
+     * @throws IllegalArgumentException if the text has something that is
+     *         not a square name
+     */
+    public static byte[] parseTranscript(String transcript) {
+        String moves = transcript.replaceAll("\\s+", "");
+        if (moves.length() % 2 != 0) {
+            throw new IllegalArgumentException("Not a game transcript: " + transcript);
+        }
+        byte[] result = new byte[moves.length() / 2];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = (byte) Bitboard.parseSquare(moves.substring(2 * i, 2 * i + 2));
+        }
+        return result;
+    }
+
+    /**
+     * write saves the game's record to a file (replacing it).
+     */
+    public static void write(Othello game, Path file) throws IOException {
+        ByteBuffer buffer = encode(game);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * read loads a game record from a file into the game.
+     *
+     * @throws IOException if the file cannot be read or is not a valid record
+     */
+    public static void read(Path file, Othello game) throws IOException {
+        decode(ByteBuffer.wrap(Files.readAllBytes(file)), game);
+    }
+
+    /**
+     * isGameRecord checks whether a file starts like a game record (as
+     * opposed to an old text save).
+     */
+    public static boolean isGameRecord(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(4);
+            while (magic.hasRemaining() && channel.read(magic) >= 0) {
+                continue;
+            }
+            return !magic.hasRemaining() && magic.getInt(0) == MAGIC;
+        }
+    }
+
+    // checksum returns the CRC-32 of length bytes starting at begin
+    private static int checksum(ByteBuffer buffer, int begin, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate().position(begin).limit(begin + length));
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,434 @@
+package org.cis1200.othello;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+/**
+ * GameServer hosts many Othello games at once for clients on the network,
+ * without any user interface.
+ *
+ * The protocol is one text line per request and one per response:
+ * 1. NEW: starts a game, answers "OK id" (ids are never reused, so a
+ * server starts at most Integer.MAX_VALUE games)
+ * 2. STATE id: answers "OK board turn moves" (see below)
+ * 3. MOVE id square: plays a move such as f5, answers like STATE
+ * 4. MOVES id: answers "OK" followed by the valid moves, e.g. "OK c4 d3"
+ * 5. CLOSE id: ends a game, answers "OK"
+ * 6. QUIT: answers "OK" and closes the connection
+ * Errors are answered with "ERR" and a message. The games a connection
+ * started end when it closes, unless it has ended them already.
+ *
+ * The board is 64 characters, a1 to h8 row by row: X for Player 1, O for
+ * Player 2 and . for empty. The turn is X or O, or - once the game is
+ * over. The moves are the valid moves joined with commas, or - if none.
+ *
+ * One thread does all the network work with a Selector. The games are
+ * split into shards by id, and each shard has a single thread that is
+ * the only one to ever touch its games, so there are no locks around
+ * game state. A connection has at most one request in a shard at a
+ * time; the next one waits, so responses always come back in order.
+ *
+ * Engine statistics are published over JMX (see EngineStats).
+ *
+ * java org.cis1200.othello.GameServer [port] [shards]
+ */
+public class GameServer implements Runnable {
+
+    public static final int DEFAULT_PORT = 7878;
+
+    // longest request line accepted; longer ones close the connection
+    private static final int MAX_LINE = 256;
+
+    // most requests a connection may have waiting
+    private static final int MAX_QUEUED = 1024;
+
+    private static final String NO_GAME = "ERR no such game";
+
+    /**
+     * Shard owns some of the games. Its map is only used from its thread.
+     */
+    private static final class Shard {
+        final ExecutorService thread;
+        final Map<Integer, Othello> games = new HashMap<>();
+
+        Shard(int number) {
+            thread = Executors.newSingleThreadExecutor(task -> {
+                Thread t = new Thread(task, "Othello shard " + number);
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    /**
+     * Connection is one client. Only the selector thread uses it.
+     */
+    private static final class Connection {
+        final SocketChannel channel;
+        final ByteBuffer in = ByteBuffer.allocate(MAX_LINE * 4);
+        final Queue<String> requests = new ArrayDeque<>();
+        final Queue<ByteBuffer> out = new ArrayDeque<>();
+        // ids of the games this client started and has not closed
+        final Set<Integer> games = new HashSet<>();
+        // true while a request is waiting for its shard
+        boolean busy;
+        boolean closing;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    private final ServerSocketChannel server;
+    private final Selector selector;
+    private final Shard[] shards;
+    // responses finished by the shards: connection, then response line
+    private final Queue<Object[]> completed = new ConcurrentLinkedQueue<>();
+    private int nextId;
+
+    /**
+     * Creates a server listening on the given port of localhost.
+     */
+    public GameServer(int port, int shardCount) throws IOException {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Need at least one shard");
+        }
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress("localhost", port), 1024);
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(i);
+        }
+    }
+
+    /**
+     * getPort returns the port the server listens on (useful with port 0).
+     */
+    public int getPort() throws IOException {
+        return ((InetSocketAddress) server.getLocalAddress()).getPort();
+    }
+
+    /**
+     * run serves clients until the thread is interrupted.
+     */
+    @Override
+    public void run() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        handle(key);
+                    } catch (IOException e) {
+                        close(key);
+                    }
+                }
+                sendCompleted();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Game server failed", e);
+        } finally {
+            for (Shard shard : shards) {
+                shard.thread.shutdownNow();
+            }
+            try {
+                selector.close();
+                server.close();
+            } catch (IOException e) {
+                // closing anyway
+            }
+        }
+    }
+
+    private void handle(SelectionKey key) throws IOException {
+        if (!key.isValid()) {
+            return;
+        }
+        if (key.isAcceptable()) {
+            SocketChannel channel = server.accept();
+            if (channel != null) {
+                channel.configureBlocking(false);
+                channel.register(selector, SelectionKey.OP_READ, new Connection(channel));
+            }
+            return;
+        }
+        Connection connection = (Connection) key.attachment();
+        if (key.isReadable()) {
+            read(key, connection);
+        }
+        if (key.isValid() && key.isWritable()) {
+            write(key, connection);
+        }
+    }
+
+    // read takes in what the client sent and splits it into request lines
+    private void read(SelectionKey key, Connection connection) throws IOException {
+        if (connection.channel.read(connection.in) < 0) {
+            close(key);
+            return;
+        }
+        ByteBuffer in = connection.in;
+        int start = 0;
+        for (int i = 0; i < in.position(); i++) {
+            if (in.get(i) == '\n') {
+                String line = new String(in.array(), start, i - start, StandardCharsets.US_ASCII);
+                connection.requests.add(line.trim());
+                start = i + 1;
+            }
+        }
+        in.flip().position(start);
+        in.compact();
+        if (!in.hasRemaining() || connection.requests.size() > MAX_QUEUED) {
+            // a line that does not fit, or far too many requests at once
+            close(key);
+            return;
+        }
+        if (connection.closing) {
+            // after QUIT, lines still arriving are dropped until the connection closes
+            connection.requests.clear();
+            return;
+        }
+        dispatch(connection);
+    }
+
+    // dispatch starts the connection's next request, if it is not busy
+    private void dispatch(Connection connection) {
+        while (!connection.busy && !connection.requests.isEmpty()) {
+            String[] words = connection.requests.remove().split("\\s+");
+            String command = words[0].toUpperCase();
+            if (command.equals("NEW")) {
+                if (nextId == Integer.MAX_VALUE) {
+                    respond(connection, "ERR no more games");
+                    continue;
+                }
+                int id = nextId++;
+                connection.games.add(id);
+                submit(connection, id, games -> {
+                    games.put(id, new Othello());
+                    return "OK " + id;
+                });
+            } else if (command.equals("QUIT")) {
+                // nothing sent after QUIT is run
+                connection.closing = true;
+                connection.requests.clear();
+                respond(connection, "OK");
+                break;
+            } else if (words.length < 2) {
+                respond(connection, "ERR unknown request");
+            } else {
+                int id;
+                try {
+                    id = Integer.parseInt(words[1]);
+                } catch (NumberFormatException e) {
+                    respond(connection, "ERR bad game id");
+                    continue;
+                }
+                if (id < 0) {
+                    respond(connection, "ERR bad game id");
+                    continue;
+                }
+                switch (command) {
+                    case "STATE":
+                        submit(connection, id, onGame(id, GameServer::state));
+                        break;
+                    case "MOVES":
+                        submit(connection, id, onGame(id, game -> "OK " + moveList(game, " ")));
+                        break;
+                    case "MOVE":
+                        if (words.length < 3) {
+                            respond(connection, "ERR missing square");
+                        } else {
+                            String square = words[2];
+                            submit(connection, id, onGame(id, game -> move(game, square)));
+                        }
+                        break;
+                    case "CLOSE":
+                        connection.games.remove(id);
+                        submit(connection, id,
+                                games -> games.remove(id) != null ? "OK" : NO_GAME);
+                        break;
+                    default:
+                        respond(connection, "ERR unknown request");
+                }
+            }
+        }
+    }
+
+    /* submit hands a request to the shard that owns game id. The request
+    runs on the shard's thread with the shard's games, and its response
+    comes back through the completed queue (waking up the selector).
+     */
+    private void submit(Connection connection, int id,
+                        Function<Map<Integer, Othello>, String> request) {
+        connection.busy = true;
+        Shard shard = shards[id % shards.length];
+        shard.thread.execute(() -> {
+            completed.add(new Object[] {connection, request.apply(shard.games)});
+            selector.wakeup();
+        });
+    }
+
+    // onGame turns a request on one game into a request on the shard's games
+    private static Function<Map<Integer, Othello>, String> onGame(
+            int id, Function<Othello, String> request) {
+        return games -> {
+            Othello game = games.get(id);
+            return game == null ? NO_GAME : request.apply(game);
+        };
+    }
+
+    // sendCompleted queues the shards' responses and starts the next requests
+    private void sendCompleted() {
+        Object[] done;
+        while ((done = completed.poll()) != null) {
+            Connection connection = (Connection) done[0];
+            connection.busy = false;
+            if (!connection.channel.isOpen()) {
+                continue;
+            }
+            respond(connection, (String) done[1]);
+            dispatch(connection);
+        }
+    }
+
+    // respond queues a response line and asks to be told when it can be sent
+    private void respond(Connection connection, String response) {
+        connection.out.add(ByteBuffer.wrap((response + "\n").getBytes(StandardCharsets.US_ASCII)));
+        SelectionKey key = connection.channel.keyFor(selector);
+        if (key != null && key.isValid()) {
+            key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+        }
+    }
+
+    private void write(SelectionKey key, Connection connection) throws IOException {
+        while (!connection.out.isEmpty()) {
+            ByteBuffer buffer = connection.out.peek();
+            connection.channel.write(buffer);
+            if (buffer.hasRemaining()) {
+                return;
+            }
+            connection.out.remove();
+        }
+        key.interestOps(SelectionKey.OP_READ);
+        if (connection.closing) {
+            close(key);
+        }
+    }
+
+    /* close ends a connection and the games it started. They are removed
+    on their shards' threads, after any request for them already queued
+    there (including the NEW that made them).
+     */
+    private void close(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            // already gone
+        }
+        if (!(key.attachment() instanceof Connection)) {
+            return;
+        }
+        Connection connection = (Connection) key.attachment();
+        if (connection.games.isEmpty()) {
+            return;
+        }
+        List<List<Integer>> byShard = new ArrayList<>();
+        for (int i = 0; i < shards.length; i++) {
+            byShard.add(new ArrayList<>());
+        }
+        for (int id : connection.games) {
+            byShard.get(id % shards.length).add(id);
+        }
+        connection.games.clear();
+        for (int i = 0; i < shards.length; i++) {
+            Shard shard = shards[i];
+            List<Integer> ids = byShard.get(i);
+            if (!ids.isEmpty()) {
+                shard.thread.execute(() -> {
+                    for (int id : ids) {
+                        shard.games.remove(id);
+                    }
+                });
+            }
+        }
+    }
+
+    // the request handlers below run on the game's shard thread
+
+    private static String move(Othello game, String square) {
+        int sq;
+        try {
+            sq = Bitboard.parseSquare(square);
+        } catch (IllegalArgumentException e) {
+            return "ERR bad square " + square;
+        }
+        if (!game.playTurn(sq & 7, sq >>> 3)) {
+            return "ERR invalid move " + square;
+        }
+        return state(game);
+    }
+
+    private static String state(Othello game) {
+        StringBuilder line = new StringBuilder(80).append("OK ");
+        for (int r = 0; r < 8; r++) {
+            for (int c = 0; c < 8; c++) {
+                int cell = game.getCell(c, r);
+                line.append(cell == 1 ? 'X' : cell == 2 ? 'O' : '.');
+            }
+        }
+        line.append(' ').append(game.getGameStatus() ? '-' : game.getCurrentPlayer() ? 'X' : 'O');
+        return line.append(' ').append(moveList(game, ",")).toString();
+    }
+
+    private static String moveList(Othello game, String separator) {
+        long moves = game.getLegalMoves();
+        if (moves == 0) {
+            return "-";
+        }
+        StringBuilder list = new StringBuilder();
+        for (; moves != 0; moves &= moves - 1) {
+            if (list.length() > 0) {
+                list.append(separator);
+            }
+            list.append(Bitboard.squareName(Long.numberOfTrailingZeros(moves)));
+        }
+        return list.toString();
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int shards = args.length > 1 ? Integer.parseInt(args[1])
+                : Runtime.getRuntime().availableProcessors();
+        GameServer server = new GameServer(port, shards);
+        EngineStats.registerMBean();
+        System.out.println("Othello server on port " + server.getPort() + " with " + shards
+                + " shards");
+        server.run();
+    }
+}
@@ -0,0 +1,25 @@
+package org.cis1200.othello;
+
+/**
+ * GreedyPlayer plays the valid move that flips the most discs right now
+ * (the first such square on a tie). It does not look ahead at all.
+ */
+public class GreedyPlayer implements Player {
+
+    @Override
+    public int chooseMove(Position position) {
+        long own = position.getCurrentPlayer() ? position.getBlack() : position.getWhite();
+        long opp = position.getCurrentPlayer() ? position.getWhite() : position.getBlack();
+        int best = SearchResult.PASS;
+        int mostFlips = 0;
+        for (long moves = position.legalMoves(); moves != 0; moves &= moves - 1) {
+            int sq = Long.numberOfTrailingZeros(moves);
+            int flips = Long.bitCount(Bitboard.flips(sq, own, opp));
+            if (flips > mostFlips) {
+                mostFlips = flips;
+                best = sq;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,99 @@
+package org.cis1200.othello;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LatencyHistogram counts durations (in nanoseconds) in buckets, so that
+ * percentiles can be read off later without keeping every sample.
+ *
+ * Each power of two is split into 4 buckets, so a percentile is accurate
+ * to within 25%. Recording is a bit count and one LongAdder increment: it
+ * never allocates or locks, and many threads may record at once.
+ */
+public final class LatencyHistogram {
+
+    // 4 buckets per power of two, for every power of two a long can hold
+    private static final int SUB_BITS = 2;
+    private static final int BUCKETS = 64 << SUB_BITS;
+
+    private final LongAdder[] counts = new LongAdder[BUCKETS];
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * record adds one duration.
+     */
+    public void record(long nanos) {
+        counts[bucket(Math.max(nanos, 0))].increment();
+    }
+
+    /* bucket: values below 4 get a bucket each; above that, the position
+    of the highest bit picks the power of two and the 2 bits below it
+    pick one of its 4 buckets.
+     */
+    private static int bucket(long value) {
+        if (value < (1 << SUB_BITS)) {
+            return (int) value;
+        }
+        int high = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (high - SUB_BITS)) & ((1 << SUB_BITS) - 1);
+        return ((high - SUB_BITS + 1) << SUB_BITS) | sub;
+    }
+
+    // upper end of a bucket (the largest value that falls in it)
+    private static long upperBound(int bucket) {
+        if (bucket < (1 << SUB_BITS)) {
+            return bucket;
+        }
+        int high = (bucket >>> SUB_BITS) + SUB_BITS - 1;
+        long sub = bucket & ((1 << SUB_BITS) - 1);
+        long lower = (1L << high) | (sub << (high - SUB_BITS));
+        return lower + (1L << (high - SUB_BITS)) - 1;
+    }
+
+    /**
+     * getCount returns the number of durations recorded.
+     */
+    public long getCount() {
+        long count = 0;
+        for (LongAdder c : counts) {
+            count += c.sum();
+        }
+        return count;
+    }
+
+    /**
+     * percentile returns a duration that the given fraction (0 to 1) of
+     * the recorded durations do not exceed, or 0 if nothing is recorded.
+     */
+    public long percentile(double fraction) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts[i].sum();
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(fraction * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return upperBound(i);
+            }
+        }
+        return upperBound(BUCKETS - 1);
+    }
+
+    public void reset() {
+        for (LongAdder c : counts) {
+            c.reset();
+        }
+    }
+}
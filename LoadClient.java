@@ -0,0 +1,201 @@
+package org.cis1200.othello;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Random;
+
+/**
+ * LoadClient measures how a GameServer holds up under many sessions at
+ * once. Every session is a connection that plays random games on the
+ * server, one after another: NEW, STATE, then MOVE until the game is over,
+ * then CLOSE and start again.
+ *
+ * Each session waits for one response before sending its next request,
+ * so the latency of a request is the time from sending it to reading the
+ * response. All sessions run on one thread with a Selector.
+ *
+ * At the end it prints the moves per second and the median (p50), p99 and
+ * worst latency of MOVE requests.
+ *
+ * java org.cis1200.othello.LoadClient [sessions] [seconds] [host] [port]
+ */
+public class LoadClient {
+
+    private enum Waiting { NEW, STATE, MOVE, CLOSE }
+
+    /**
+     * Session is one connection playing games.
+     */
+    private static final class Session {
+        final SocketChannel channel;
+        final ByteBuffer in = ByteBuffer.allocate(512);
+        ByteBuffer out;
+        Waiting waiting;
+        int game;
+        long sentAt;
+
+        Session(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    private final Random random = new Random();
+    private long[] latencies = new long[1 << 16];
+    private int moves;
+    private int games;
+    private int errors;
+
+    /**
+     * run opens the sessions, plays for the given time and prints the
+     * results.
+     */
+    public void run(String host, int port, int sessions, int seconds) throws IOException {
+        InetSocketAddress address = new InetSocketAddress(host, port);
+        try (Selector selector = Selector.open()) {
+            for (int i = 0; i < sessions; i++) {
+                SocketChannel channel = SocketChannel.open();
+                channel.configureBlocking(false);
+                channel.connect(address);
+                channel.register(selector, SelectionKey.OP_CONNECT, new Session(channel));
+            }
+
+            long start = System.nanoTime();
+            long end = start + seconds * 1_000_000_000L;
+            while (System.nanoTime() < end) {
+                selector.select(100);
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        handle(key, (Session) key.attachment());
+                    } catch (IOException e) {
+                        // the session is lost; the others carry on
+                        errors++;
+                        key.channel().close();
+                    }
+                }
+            }
+            double elapsed = (System.nanoTime() - start) / 1e9;
+            for (SelectionKey key : selector.keys()) {
+                key.channel().close();
+            }
+            report(sessions, elapsed);
+        }
+    }
+
+    private void handle(SelectionKey key, Session session) throws IOException {
+        if (key.isConnectable()) {
+            session.channel.finishConnect();
+            send(key, session, Waiting.NEW, "NEW");
+            return;
+        }
+        if (key.isWritable()) {
+            session.channel.write(session.out);
+            if (!session.out.hasRemaining()) {
+                key.interestOps(SelectionKey.OP_READ);
+            }
+        }
+        if (key.isReadable()) {
+            if (session.channel.read(session.in) < 0) {
+                throw new IOException("Server closed the connection");
+            }
+            ByteBuffer in = session.in;
+            for (int i = 0; i < in.position(); i++) {
+                if (in.get(i) == '\n') {
+                    String line = new String(in.array(), 0, i, StandardCharsets.US_ASCII);
+                    in.clear();
+                    received(key, session, line);
+                    break;
+                }
+            }
+        }
+    }
+
+    // received handles a response and sends the session's next request
+    private void received(SelectionKey key, Session session, String response) {
+        long latency = System.nanoTime() - session.sentAt;
+        String[] words = response.split(" ");
+        if (!words[0].equals("OK")) {
+            errors++;
+            send(key, session, Waiting.NEW, "NEW");
+            return;
+        }
+        switch (session.waiting) {
+            case NEW:
+                session.game = Integer.parseInt(words[1]);
+                send(key, session, Waiting.STATE, "STATE " + session.game);
+                break;
+            case MOVE:
+                record(latency);
+                playOn(key, session, words);
+                break;
+            case STATE:
+                playOn(key, session, words);
+                break;
+            case CLOSE:
+                games++;
+                send(key, session, Waiting.NEW, "NEW");
+                break;
+            default:
+                throw new IllegalStateException();
+        }
+    }
+
+    // playOn makes a random move from the state in the response, or ends the game
+    private void playOn(SelectionKey key, Session session, String[] state) {
+        if (state[2].equals("-")) {
+            send(key, session, Waiting.CLOSE, "CLOSE " + session.game);
+        } else {
+            String[] valid = state[3].split(",");
+            send(key, session, Waiting.MOVE, "MOVE " + session.game + " "
+                    + valid[random.nextInt(valid.length)]);
+        }
+    }
+
+    private void send(SelectionKey key, Session session, Waiting waiting, String request) {
+        session.waiting = waiting;
+        session.out = ByteBuffer.wrap((request + "\n").getBytes(StandardCharsets.US_ASCII));
+        session.sentAt = System.nanoTime();
+        key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+    }
+
+    private void record(long latency) {
+        if (moves == latencies.length) {
+            latencies = Arrays.copyOf(latencies, moves * 2);
+        }
+        latencies[moves++] = latency;
+    }
+
+    private void report(int sessions, double seconds) {
+        System.out.printf("%d sessions, %.1f s: %d moves (%.0f moves/sec), %d games, %d errors%n",
+                sessions, seconds, moves, moves / seconds, games, errors);
+        if (moves == 0) {
+            return;
+        }
+        long[] sorted = Arrays.copyOf(latencies, moves);
+        Arrays.sort(sorted);
+        System.out.printf("MOVE latency: p50 %.3f ms, p99 %.3f ms, max %.3f ms%n",
+                percentile(sorted, 0.50) / 1e6, percentile(sorted, 0.99) / 1e6,
+                sorted[moves - 1] / 1e6);
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) (p * sorted.length))];
+    }
+
+    public static void main(String[] args) throws IOException {
+        int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        String host = args.length > 2 ? args[2] : "localhost";
+        int port = args.length > 3 ? Integer.parseInt(args[3]) : GameServer.DEFAULT_PORT;
+        new LoadClient().run(host, port, sessions, seconds);
+    }
+}
@@ -0,0 +1,354 @@
+package org.cis1200.othello;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * MonteCarloPlayer picks moves by Monte Carlo tree search (UCT) instead
+ * of alpha-beta: it plays many random games (playouts) from the position
+ * and grows a tree of the moves that did best, trying the others now and
+ * then in case they are better than they looked. The move played is the
+ * one tried most often.
+ *
+ * The tree lives in an arena of parallel arrays, one slot per node, that
+ * is allocated once and reused for every move; a node's children are
+ * always in consecutive slots. Nodes do not store positions: the board is
+ * rebuilt with bitboard moves on the way down the tree, and a playout only
+ * plays on two longs, so nothing is allocated per playout.
+ *
+ * All threads grow the same tree. A thread counts its visit to a node on
+ * the way down and adds the playout's result on the way back up, so while
+ * the playout runs the node looks like a loss to the other threads
+ * ("virtual loss") and they spread out over other moves.
+ *
+ * A move ends when the time budget is used up or, if there is one, the
+ * playout budget is.
+ */
+public class MonteCarloPlayer implements Player {
+
+    /**
+     * Default number of tree nodes (about 14 bytes each).
+     */
+    public static final int DEFAULT_NODES = 1 << 20;
+
+    // how much UCT favours moves that have been tried little
+    private static final double EXPLORATION = 1.0;
+
+    // visits before a node gets children (the first ones are just playouts)
+    private static final int EXPAND_VISITS = 2;
+
+    // firstChild of a node without children yet, or one being expanded
+    private static final int LEAF = -1;
+    private static final int EXPANDING = -2;
+
+    // move of a pass node
+    private static final int PASS = 64;
+
+    // every game ends within 60 moves and a pass never follows a pass
+    private static final int MAX_PATH = 128;
+
+    private final long budgetMillis;
+    private final long maxPlayouts;
+    private final int threads;
+    private final ExecutorService helpers;
+
+    // the arena: for every node its visits and its total result in half
+    // points (2 per win, 1 per draw) for the player who moved into it
+    private final AtomicIntegerArray visits;
+    private final AtomicIntegerArray score;
+    private final AtomicIntegerArray firstChild;
+    private final byte[] childCount;
+    private final byte[] move;
+    private final AtomicInteger nextNode = new AtomicInteger();
+
+    // the current search
+    private long rootOwn;
+    private long rootOpp;
+    private long deadline;
+    private final AtomicLong playouts = new AtomicLong();
+    private volatile boolean stop;
+
+    /**
+     * Creates a Monte Carlo player.
+     *
+     * @param budgetMillis time budget per move in milliseconds
+     * @param maxPlayouts playouts per move (0 for no limit)
+     * @param threads number of threads playing out at once
+     * @param nodes size of the tree arena in nodes
+     */
+    public MonteCarloPlayer(long budgetMillis, long maxPlayouts, int threads, int nodes) {
+        if (budgetMillis <= 0 || maxPlayouts < 0 || threads < 1 || nodes < 128) {
+            throw new IllegalArgumentException("Bad budget, playouts, threads or nodes");
+        }
+        this.budgetMillis = budgetMillis;
+        this.maxPlayouts = maxPlayouts;
+        this.threads = threads;
+        if (threads > 1) {
+            helpers = Executors.newFixedThreadPool(threads - 1, r -> {
+                Thread t = new Thread(r, "playout-helper");
+                t.setDaemon(true);
+                return t;
+            });
+        } else {
+            helpers = null;
+        }
+        visits = new AtomicIntegerArray(nodes);
+        score = new AtomicIntegerArray(nodes);
+        firstChild = new AtomicIntegerArray(nodes);
+        childCount = new byte[nodes];
+        move = new byte[nodes];
+    }
+
+    public MonteCarloPlayer(long budgetMillis, int threads) {
+        this(budgetMillis, 0, threads, DEFAULT_NODES);
+    }
+
+    @Override
+    public int chooseMove(Position position) {
+        return analyse(position).getMove();
+    }
+
+    /**
+     * analyse runs the tree search from the position. In the result, the
+     * score is how often the chosen move won, in percent, and the node
+     * count is the number of playouts.
+     */
+    public synchronized SearchResult analyse(Position position) {
+        long start = System.nanoTime();
+        boolean black = position.getCurrentPlayer();
+        long own = black ? position.getBlack() : position.getWhite();
+        long opp = black ? position.getWhite() : position.getBlack();
+        long moves = Bitboard.legalMoves(own, opp);
+        if (Long.bitCount(moves) <= 1) {
+            // nothing to choose
+            int only = moves == 0 ? SearchResult.PASS : Long.numberOfTrailingZeros(moves);
+            return new SearchResult(only, 0, 0, 0, 0);
+        }
+
+        rootOwn = own;
+        rootOpp = opp;
+        // cap the budget so the deadline cannot overflow
+        deadline = start + Math.min(budgetMillis, Long.MAX_VALUE / 4_000_000L) * 1_000_000L;
+        playouts.set(0);
+        stop = false;
+        nextNode.set(1);
+        initNode(0, 0);
+        expand(0, own, opp);
+
+        List<Future<?>> results = new ArrayList<>();
+        for (int i = 1; i < threads; i++) {
+            results.add(helpers.submit(this::work));
+        }
+        work();
+        for (Future<?> future : results) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Playout helper failed", e.getCause());
+            }
+        }
+
+        int best = firstChild.get(0);
+        int end = best + childCount[0];
+        for (int c = best + 1; c < end; c++) {
+            if (visits.get(c) > visits.get(best)) {
+                best = c;
+            }
+        }
+        int percent = (int) (50L * score.get(best) / Math.max(1, visits.get(best)));
+        return new SearchResult(move[best], percent, 0, playouts.get(),
+                (System.nanoTime() - start) / 1_000_000L);
+    }
+
+    /**
+     * shutdown stops the helper threads. The player must not be used
+     * afterwards.
+     */
+    public void shutdown() {
+        if (helpers != null) {
+            helpers.shutdownNow();
+        }
+    }
+
+    @Override
+    public void close() {
+        shutdown();
+    }
+
+    // work runs playouts on this thread until the search is over
+    private void work() {
+        Worker worker = new Worker();
+        while (!stop) {
+            long count = playouts.incrementAndGet();
+            if ((maxPlayouts > 0 && count > maxPlayouts)
+                    || ((count & 63) == 0 && System.nanoTime() > deadline)) {
+                // this playout is not played
+                playouts.decrementAndGet();
+                stop = true;
+                break;
+            }
+            worker.iteration();
+        }
+    }
+
+    /**
+     * Worker is the state of one thread during a search: the path down
+     * the tree and its own random numbers (xorshift, so the state is one
+     * long). It is created once per search, so playouts allocate nothing.
+     */
+    private final class Worker {
+        final int[] path = new int[MAX_PATH];
+        long random = ThreadLocalRandom.current().nextLong() | 1;
+
+        /* iteration descends the tree by UCT from the root, counting a
+        visit to every node on the way (the virtual loss), expands the leaf
+        it ends at if it has been visited enough, plays a random game from
+        there, and adds the result to every node on the path.
+         */
+        void iteration() {
+            long own = rootOwn;
+            long opp = rootOpp;
+            int node = 0;
+            int depth = 0;
+            visits.incrementAndGet(0);
+            while (true) {
+                int first = firstChild.get(node);
+                if (first == LEAF && visits.get(node) >= EXPAND_VISITS) {
+                    first = expand(node, own, opp);
+                }
+                if (first < 0 || childCount[node] == 0) {
+                    break;
+                }
+                node = select(node, first);
+                visits.incrementAndGet(node);
+                path[++depth] = node;
+                int sq = move[node];
+                if (sq != PASS) {
+                    long flipped = Bitboard.flips(sq, own, opp);
+                    own |= flipped | 1L << sq;
+                    opp &= ~flipped;
+                }
+                long swap = own;
+                own = opp;
+                opp = swap;
+            }
+
+            // each node scores for the player who moved into it
+            int result = playout(own, opp);
+            for (int d = depth; d > 0; d--) {
+                result = 2 - result;
+                score.addAndGet(path[d], result);
+            }
+        }
+
+        /* playout plays random moves to the end of the game and returns
+        the result for the player owning `own`: 2 for a win, 1 for a draw
+        and 0 for a loss.
+         */
+        int playout(long own, long opp) {
+            boolean passed = false;
+            boolean swapped = false;
+            while ((own | opp) != -1L) {
+                long moves = Bitboard.legalMoves(own, opp);
+                if (moves == 0) {
+                    if (passed) {
+                        break;
+                    }
+                    passed = true;
+                } else {
+                    passed = false;
+                    random ^= random << 13;
+                    random ^= random >>> 7;
+                    random ^= random << 17;
+                    // a random number below the move count, by multiplying
+                    int skip = (int) (((random >>> 32) * Long.bitCount(moves)) >>> 32);
+                    for (; skip > 0; skip--) {
+                        moves &= moves - 1;
+                    }
+                    int sq = Long.numberOfTrailingZeros(moves);
+                    long flipped = Bitboard.flips(sq, own, opp);
+                    own |= flipped | 1L << sq;
+                    opp &= ~flipped;
+                }
+                long swap = own;
+                own = opp;
+                opp = swap;
+                swapped = !swapped;
+            }
+            int diff = Long.bitCount(own) - Long.bitCount(opp);
+            if (swapped) {
+                diff = -diff;
+            }
+            return diff > 0 ? 2 : diff == 0 ? 1 : 0;
+        }
+    }
+
+    // select returns the child with the highest UCT value, or an untried one
+    private int select(int node, int first) {
+        double logVisits = Math.log(Math.max(1, visits.get(node)));
+        int end = first + childCount[node];
+        int best = first;
+        double bestValue = Double.NEGATIVE_INFINITY;
+        for (int c = first; c < end; c++) {
+            int n = visits.get(c);
+            if (n == 0) {
+                return c;
+            }
+            double value = score.get(c) / (2.0 * n) + EXPLORATION * Math.sqrt(logVisits / n);
+            if (value > bestValue) {
+                bestValue = value;
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    /* expand gives a node its children: one per valid move, a single pass
+    child if the player has to pass, or none once the game is over. Only
+    one thread may expand a node; the others keep treating it as a leaf
+    until it is done, as they do when the arena is full. Returns the first
+    child, or a negative value if the node is still a leaf.
+     */
+    private int expand(int node, long own, long opp) {
+        if (!firstChild.compareAndSet(node, LEAF, EXPANDING)) {
+            return firstChild.get(node);
+        }
+        long moves = Bitboard.legalMoves(own, opp);
+        int count = moves != 0 ? Long.bitCount(moves)
+                : Bitboard.legalMoves(opp, own) != 0 ? 1 : 0;
+        int first = nextNode.getAndAdd(count);
+        if (first + count > childCount.length) {
+            // the arena is full: the node stays a leaf for good
+            return EXPANDING;
+        }
+        if (moves == 0 && count == 1) {
+            initNode(first, PASS);
+        }
+        for (int c = first; moves != 0; c++, moves &= moves - 1) {
+            initNode(c, Long.numberOfTrailingZeros(moves));
+        }
+        childCount[node] = (byte) count;
+        // publishing firstChild makes the children visible to other threads
+        firstChild.set(node, first);
+        return first;
+    }
+
+    private void initNode(int node, int sq) {
+        visits.set(node, 0);
+        score.set(node, 0);
+        childCount[node] = 0;
+        move[node] = (byte) sq;
+        firstChild.set(node, LEAF);
+    }
+}
@@ -0,0 +1,233 @@
+package org.cis1200.othello;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * OpeningBook answers "what has been played from this position, and how
+ * did it go?" for positions early in the game, so the computer does not
+ * have to search the same openings over and over.
+ *
+ * The book is a binary file of fixed-size entries sorted by position
+ * hash (see Zobrist). The file is memory-mapped, so opening it costs
+ * nothing however many entries it has, and a lookup is a binary search
+ * that touches only a few pages.
+ *
+ * Positions that are the same up to a rotation or reflection of the board
+ * share their entries: the hash is that of the canonical form (see
+ * Symmetry), and moves are stored as they are on the canonical form. This
+ * makes the book up to 8 times smaller, and every game played also counts
+ * for the symmetric openings.
+ *
+ * File layout (big-endian):
+ * 1. Header: magic "OTHB", version, number of entries (4 bytes each)
+ * 2. Entries, 24 bytes each, sorted by hash then move:
+ * canonical hash (8), canonical move (1), unused (3), games (4),
+ * wins (4), draws (4)
+ * Wins and draws count for the player making the move.
+ *
+ * The whole file is mapped at once, which allows up to about 89 million
+ * entries (2 GB).
+ *
+ * Use OpeningBookBuilder to create or extend a book from game records.
+ * An OpeningBook only reads, so it can be shared between threads.
+ */
+public class OpeningBook implements Closeable {
+
+    static final int MAGIC = 0x4F544842; // "OTHB"
+    // version 1 books were keyed on the plain hash
+    static final int VERSION = 2;
+    static final int HEADER_BYTES = 12;
+    static final int ENTRY_BYTES = 24;
+
+    /**
+     * Default number of games a move needs before the book suggests it.
+     */
+    public static final int DEFAULT_MIN_GAMES = 2;
+
+    /**
+     * Entry is one move from one position, with the results it has had.
+     */
+    public static final class Entry {
+        private final int move;
+        private final int games;
+        private final int wins;
+        private final int draws;
+
+        Entry(int move, int games, int wins, int draws) {
+            this.move = move;
+            this.games = games;
+            this.wins = wins;
+            this.draws = draws;
+        }
+
+        public int getMove() {
+            return move;
+        }
+
+        public int getGames() {
+            return games;
+        }
+
+        public int getWins() {
+            return wins;
+        }
+
+        public int getDraws() {
+            return draws;
+        }
+
+        /**
+         * getScore returns the average result for the mover, from 0 (always
+         * lost) to 1 (always won); a draw counts half.
+         */
+        public double getScore() {
+            return (wins + draws / 2.0) / games;
+        }
+    }
+
+    private final FileChannel channel;
+    private final MappedByteBuffer entries;
+    private final int size;
+
+    private OpeningBook(FileChannel channel, MappedByteBuffer entries, int size) {
+        this.channel = channel;
+        this.entries = entries;
+        this.size = size;
+    }
+
+    /**
+     * open maps a book file into memory.
+     *
+     * @throws IOException if the file cannot be read or is not a book
+     */
+    public static OpeningBook open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long length = channel.size();
+            if (length < HEADER_BYTES) {
+                throw new IOException("Not an opening book: " + file);
+            }
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            if (map.getInt(0) != MAGIC) {
+                throw new IOException("Not an opening book: " + file);
+            }
+            if (map.getInt(4) != VERSION) {
+                throw new IOException("Opening book version " + map.getInt(4)
+                        + " is not supported, rebuild it: " + file);
+            }
+            int size = map.getInt(8);
+            if (size < 0 || HEADER_BYTES + (long) size * ENTRY_BYTES != length) {
+                throw new IOException("Opening book is truncated: " + file);
+            }
+            return new OpeningBook(channel, map, size);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * getSize returns the number of entries (position and move pairs).
+     */
+    public int getSize() {
+        return size;
+    }
+
+    long hashAt(int i) {
+        return entries.getLong(HEADER_BYTES + i * ENTRY_BYTES);
+    }
+
+    Entry entryAt(int i) {
+        int offset = HEADER_BYTES + i * ENTRY_BYTES;
+        return new Entry(entries.get(offset + 8) & 0xFF, entries.getInt(offset + 12),
+                entries.getInt(offset + 16), entries.getInt(offset + 20));
+    }
+
+    // first entry whose hash is >= the given hash (binary search)
+    private int lowerBound(long hash) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (hashAt(mid) < hash) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * lookup returns every book move from the position, in square order.
+     * The list is empty if the position is not in the book.
+     *
+     * The entries are found by the canonical hash and their moves turned
+     * back to the position's own orientation. In a symmetric position one
+     * entry stands for all the moves that are the same up to symmetry, so
+     * each of them is listed with its results.
+     */
+    public List<Entry> lookup(Position position) {
+        long hash = position.canonicalHash();
+        int transforms = position.canonicalTransforms();
+        Entry[] bySquare = new Entry[64];
+        for (int i = lowerBound(hash); i < size && hashAt(i) == hash; i++) {
+            Entry e = entryAt(i);
+            long moves = Symmetry.originalMoves(e.getMove(), transforms);
+            for (; moves != 0; moves &= moves - 1) {
+                int sq = Long.numberOfTrailingZeros(moves);
+                bySquare[sq] = new Entry(sq, e.getGames(), e.getWins(), e.getDraws());
+            }
+        }
+        List<Entry> moves = new ArrayList<>();
+        for (Entry e : bySquare) {
+            if (e != null) {
+                moves.add(e);
+            }
+        }
+        return moves;
+    }
+
+    /**
+     * bestMove picks the book move with the best average result among the
+     * moves played at least minGames times (more games breaks ties).
+     *
+     * @return the move, or -1 if the book has nothing to suggest
+     */
+    public int bestMove(Position position, int minGames) {
+        Entry best = null;
+        for (Entry e : lookup(position)) {
+            if (e.getGames() < minGames || !position.isValid(e.getMove())) {
+                continue;
+            }
+            if (best == null || e.getScore() > best.getScore()
+                    || (e.getScore() == best.getScore() && e.getGames() > best.getGames())) {
+                best = e;
+            }
+        }
+        return best == null ? -1 : best.getMove();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * writeHeader fills in the header for a book with the given number of
+     * entries (used by OpeningBookBuilder).
+     */
+    static void writeHeader(ByteBuffer buffer, int size) {
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(size);
+    }
+}
@@ -0,0 +1,266 @@
+package org.cis1200.othello;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * OpeningBookBuilder creates an OpeningBook file from game records, or
+ * adds more games to an existing one.
+ *
+ * Each game is replayed on the Othello model; for the first `plies` moves
+ * the canonical position hash, the move on the canonical board (see
+ * Symmetry) and how the game ended for the mover are collected in
+ * primitive arrays. write then sorts and merges them with
+ * the existing book (if any) in one sequential pass.
+ *
+ * Game records are text, one game per line, as a list of squares such as
+ * "f5d6c3d3c4". Passes are not written (Othello makes them itself). Empty
+ * lines and lines starting with # are skipped.
+ *
+ * java org.cis1200.othello.OpeningBookBuilder book-file plies game-file...
+ */
+public class OpeningBookBuilder {
+
+    // results, from the point of view of the player making the move
+    private static final int LOSS = 0;
+    private static final int DRAW = 1;
+    private static final int WIN = 2;
+
+    private final int plies;
+
+    // collected (hash, move | result << 8) pairs
+    private long[] hashes = new long[1024];
+    private int[] values = new int[1024];
+    private int count;
+    private int games;
+
+    /**
+     * @param plies number of moves from the start of each game to add
+     */
+    public OpeningBookBuilder(int plies) {
+        this.plies = plies;
+    }
+
+    public int getGames() {
+        return games;
+    }
+
+    /**
+     * addGame replays one game record and collects its opening moves. A
+     * record that cannot be read adds nothing.
+     *
+     * @throws IllegalArgumentException if the record has an invalid move,
+     *         or a square that is not two characters
+     */
+    public void addGame(String record) {
+        String moves = record.replaceAll("\\s+", "");
+        if (moves.length() % 2 != 0) {
+            throw new IllegalArgumentException("Incomplete square in game: " + record);
+        }
+        Othello game = new Othello();
+        int start = count;
+        boolean[] player1 = new boolean[moves.length() / 2];
+        try {
+            for (int i = 0; i < moves.length(); i += 2) {
+                int sq = Bitboard.parseSquare(moves.substring(i, i + 2));
+                int ply = i / 2;
+                if (ply < plies) {
+                    Position position = game.toPosition();
+                    add(position.canonicalHash(),
+                            Symmetry.canonicalMove(sq, position.canonicalTransforms()));
+                    player1[ply] = game.getCurrentPlayer();
+                }
+                if (!game.playTurn(sq & 7, sq >>> 3)) {
+                    throw new IllegalArgumentException("Invalid move "
+                            + moves.substring(i, i + 2) + " in game: " + record);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            // drop the moves already collected from this game
+            count = start;
+            throw e;
+        }
+
+        // unfinished games (e.g. resigned) are scored by the discs on the board
+        int black = game.getPieceCount(1);
+        int white = game.getPieceCount(2);
+        for (int i = start; i < count; i++) {
+            int mover = player1[i - start] ? black - white : white - black;
+            int result = mover > 0 ? WIN : mover < 0 ? LOSS : DRAW;
+            values[i] |= result << 8;
+        }
+        games++;
+    }
+
+    private void add(long hash, int move) {
+        if (count == hashes.length) {
+            hashes = Arrays.copyOf(hashes, count * 2);
+            values = Arrays.copyOf(values, count * 2);
+        }
+        hashes[count] = hash;
+        values[count] = move;
+        count++;
+    }
+
+    /**
+     * addGames adds every game record in a text file.
+     */
+    public void addGames(Path file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    addGame(line);
+                }
+            }
+        }
+    }
+
+    /**
+     * write saves the collected moves to a book file. If the file already
+     * is a book, its entries are kept and the new results are added to
+     * them. The new file is written next to it and then moved in place.
+     */
+    public void write(Path file) throws IOException {
+        sort(0, count - 1);
+
+        OpeningBook old = Files.exists(file) ? OpeningBook.open(file) : null;
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            // the header is written last, once the number of entries is known
+            out.position(OpeningBook.HEADER_BYTES);
+
+            int size = 0;
+            int oldSize = old == null ? 0 : old.getSize();
+            int i = 0;
+            int j = 0;
+            while (i < count || j < oldSize) {
+                // take the smaller of the next new and next old entry
+                long hash;
+                int move;
+                if (j >= oldSize || (i < count && compare(hashes[i], values[i] & 0xFF,
+                        old.hashAt(j), old.entryAt(j).getMove()) <= 0)) {
+                    hash = hashes[i];
+                    move = values[i] & 0xFF;
+                } else {
+                    hash = old.hashAt(j);
+                    move = old.entryAt(j).getMove();
+                }
+
+                int total = 0;
+                int wins = 0;
+                int draws = 0;
+                while (i < count && hashes[i] == hash && (values[i] & 0xFF) == move) {
+                    int result = values[i] >>> 8;
+                    total++;
+                    wins += result == WIN ? 1 : 0;
+                    draws += result == DRAW ? 1 : 0;
+                    i++;
+                }
+                if (j < oldSize && old.hashAt(j) == hash && old.entryAt(j).getMove() == move) {
+                    OpeningBook.Entry e = old.entryAt(j);
+                    total += e.getGames();
+                    wins += e.getWins();
+                    draws += e.getDraws();
+                    j++;
+                }
+
+                if (buffer.remaining() < OpeningBook.ENTRY_BYTES) {
+                    flush(out, buffer);
+                }
+                buffer.putLong(hash).put((byte) move).put((byte) 0).putShort((short) 0)
+                        .putInt(total).putInt(wins).putInt(draws);
+                size++;
+            }
+            flush(out, buffer);
+
+            buffer.clear();
+            OpeningBook.writeHeader(buffer, size);
+            buffer.flip();
+            out.write(buffer, 0);
+        } finally {
+            if (old != null) {
+                old.close();
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void flush(FileChannel out, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static int compare(long hashA, int moveA, long hashB, int moveB) {
+        int c = Long.compare(hashA, hashB);
+        return c != 0 ? c : Integer.compare(moveA, moveB);
+    }
+
+    // quicksort of the parallel arrays by (hash, move)
+    private void sort(int lo, int hi) {
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            long pivotHash = hashes[mid];
+            int pivotMove = values[mid] & 0xFF;
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (compare(hashes[i], values[i] & 0xFF, pivotHash, pivotMove) < 0) {
+                    i++;
+                }
+                while (compare(hashes[j], values[j] & 0xFF, pivotHash, pivotMove) > 0) {
+                    j--;
+                }
+                if (i <= j) {
+                    long h = hashes[i];
+                    hashes[i] = hashes[j];
+                    hashes[j] = h;
+                    int v = values[i];
+                    values[i] = values[j];
+                    values[j] = v;
+                    i++;
+                    j--;
+                }
+            }
+            // recurse into the smaller half, loop on the larger one
+            if (j - lo < hi - i) {
+                sort(lo, j);
+                lo = i;
+            } else {
+                sort(i, hi);
+                hi = j;
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: OpeningBookBuilder book-file plies game-file...");
+            System.exit(2);
+        }
+        Path book = Paths.get(args[0]);
+        OpeningBookBuilder builder = new OpeningBookBuilder(Integer.parseInt(args[1]));
+        for (int i = 2; i < args.length; i++) {
+            builder.addGames(Paths.get(args[i]));
+        }
+        builder.write(book);
+        try (OpeningBook result = OpeningBook.open(book)) {
+            System.out.println("Added " + builder.getGames() + " games, book now has "
+                    + result.getSize() + " entries");
+        }
+    }
+}
@@ -2,10 +2,13 @@
 
 package org.cis1200.othello;
 
-import java.util.ArrayList;
-import java.util.List;
-
-import java.io.*;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
 
 /**
  * This class is a model for Othello.
@@ -23,20 +26,78 @@ import java.io.*;
  *
  * Run this file to see the main method play a game of Othello,
  * visualized with Strings printed to the console.
+ *
+ * The board is 8x8 unless another even size is chosen (see setSize).
+ * Only 8x8 games have Positions, hashes and move bitboards, which is what
+ * the computer players, the opening book and the game records work with;
+ * the methods for those throw IllegalStateException for other sizes.
  */
 public class Othello {
 
-    private int[][] board;
+    /**
+     * The standard board size.
+     */
+    public static final int STANDARD_SIZE = 8;
+
+    /* The board is stored as two bitboards (see Bitboard):
+    1. black holds the discs of Player 1
+    2. white holds the discs of Player 2
+    Bit (r * 8 + c) is set if the side owns the cell at column c, row r.
+     */
+    private long black;
+    private long white;
     private int numTurns;
     private boolean player1;
     private boolean gameOver;
 
-    /* initialize two arrays of directions:
-    1. each cell matches a direction
-    2. for example: (1, -1) means moving South West
-    */
-    int[] dRow = {1, 0, -1, -1, -1, 0, 1, 1};
-    int[] dCol = {-1, -1, -1, 0, 1, 1, 1, 0};
+    /* Cached state, kept up to date by playTurn so that the
+    score and end-of-game checks never rescan the board:
+    1. the number of pieces each player has on the board
+    2. the legal moves of the player whose turn it is
+     */
+    private int numPlayer1;
+    private int numPlayer2;
+    private long legalMoves;
+
+    // Zobrist hash of the position (see Zobrist), updated move by move
+    private long hash;
+
+    /* Move history: the position the game started from, and every move
+    made since then as one byte (the square index r * 8 + c). Passes are
+    not stored, since playTurn makes them by itself. numTurns is the
+    number of moves in the history.
+     */
+    private byte[] moves = new byte[60];
+    private long startBlack;
+    private long startWhite;
+    private boolean startPlayer1;
+
+    /* Undo information, one entry per move in the history: the discs the
+    move flipped and whether Player 1 made it. That is all undo needs to
+    put the position back (the hash and counts are updated the same way
+    playTurn updates them). Moves from numTurns up to lastTurn have been
+    undone and can be redone.
+     */
+    private long[] flippedHistory = new long[60];
+    private boolean[] moverHistory = new boolean[60];
+    private int lastTurn;
+
+    /* Boards of other sizes are stored as multi-word bitsets instead (see
+    WideBitboard), with bit r * size + c for each cell; black, white,
+    legalMoves, the hash and the start position are then not used. Their
+    history keeps the moves as ints and the flipped discs as bitsets,
+    which are reused when a move is made again at the same turn.
+     */
+    private int size = STANDARD_SIZE;
+    private WideBitboard wide;
+    private long[] wideBlack;
+    private long[] wideWhite;
+    private long[] wideLegal;
+    private int[] wideMoves;
+    private long[][] wideFlipped;
+
+    // moves played since they were last added to EngineStats
+    private int unreportedMoves;
 
     int opponent;
 
@@ -47,6 +108,64 @@ public class Othello {
         reset();
     }
 
+    /**
+     * Creates a game on a size x size board.
+     *
+     * @throws IllegalArgumentException if the size is odd or out of range
+     */
+    public Othello(int size) {
+        setSize(size);
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * setSize changes the size of the board (an even number from 4 to 32)
+     * and starts a new game on it.
+     *
+     * @throws IllegalArgumentException if the size is odd or out of range
+     */
+    public void setSize(int size) {
+        changeSize(size);
+        reset();
+    }
+
+    // changeSize sets up the board representation for a size, leaving it empty
+    private void changeSize(int newSize) {
+        if (newSize == STANDARD_SIZE) {
+            wide = null;
+            wideBlack = null;
+            wideWhite = null;
+            wideLegal = null;
+            wideMoves = null;
+            wideFlipped = null;
+        } else {
+            wide = new WideBitboard(newSize);
+            wideBlack = wide.newBitset();
+            wideWhite = wide.newBitset();
+            wideLegal = wide.newBitset();
+            wideMoves = new int[newSize * newSize];
+            wideFlipped = new long[newSize * newSize][];
+            if (moverHistory.length < wideMoves.length) {
+                moverHistory = new boolean[wideMoves.length];
+            }
+        }
+        size = newSize;
+        black = 0;
+        white = 0;
+        numTurns = 0;
+        lastTurn = 0;
+    }
+
+    // requireStandard is for the methods that only work on 8x8 boards
+    private void requireStandard() {
+        if (wide != null) {
+            throw new IllegalStateException("Only an 8x8 game has this, not " + size + "x" + size);
+        }
+    }
+
     /* Player Denotations:
     1. Player One (Black Piece): 1
     2. Player Two (White Piece): 2
@@ -62,9 +181,6 @@ public class Othello {
      */
     public void reset() {
 
-        // Create an 8:8 board (standard Othello board size)
-        board = new int[8][8];
-
         // Return every variable back to its original state
         numTurns = 0;
         player1 = true;
@@ -73,10 +189,65 @@ public class Othello {
         /* Start the game by setting 4 pieces of Black (Player 1)
         and White (Player 2) in the middle => Hardcoded
          */
-        board[3][3] = 2;
-        board[3][4] = 1;
-        board[4][3] = 1;
-        board[4][4] = 2;
+        if (wide != null) {
+            wide.start(wideBlack, wideWhite);
+        } else {
+            black = Bitboard.START_BLACK;
+            white = Bitboard.START_WHITE;
+        }
+        refresh();
+        startHistory();
+    }
+
+    /* startHistory makes the current position the start of the move
+    history. Used whenever the board is replaced without playing moves.
+     */
+    private void startHistory() {
+        numTurns = 0;
+        lastTurn = 0;
+        startBlack = black;
+        startWhite = white;
+        startPlayer1 = player1;
+    }
+
+    /* refresh recomputes the cached counts, legal moves and hash from
+    the bitboards. Only needed when the whole board is replaced (reset,
+    updateBoard, setPosition, loadGame) - playTurn and flipPiece keep
+    the cache up to date by themselves.
+     */
+    private void refresh() {
+        if (wide != null) {
+            numPlayer1 = WideBitboard.count(wideBlack);
+            numPlayer2 = WideBitboard.count(wideWhite);
+            if (player1) {
+                wide.legalMoves(wideBlack, wideWhite, wideLegal);
+            } else {
+                wide.legalMoves(wideWhite, wideBlack, wideLegal);
+            }
+            return;
+        }
+        numPlayer1 = Long.bitCount(black);
+        numPlayer2 = Long.bitCount(white);
+        hash = Zobrist.hash(black, white, player1);
+        if (player1) {
+            legalMoves = Bitboard.legalMoves(black, white);
+        } else {
+            legalMoves = Bitboard.legalMoves(white, black);
+        }
+    }
+
+    // discs returns the bitboard of the given player (1 or 2)
+    private long discs(int player) {
+        return player == 1 ? black : white;
+    }
+
+    private long[] wideDiscs(int player) {
+        return player == 1 ? wideBlack : wideWhite;
+    }
+
+    // hasLegalMoves checks if the player to move has a valid move
+    private boolean hasLegalMoves() {
+        return wide != null ? !WideBitboard.isEmpty(wideLegal) : legalMoves != 0;
     }
 
     /* decide who is making a move:
@@ -106,105 +277,105 @@ public class Othello {
      * if a move has been made successfully.
      */
     public boolean isValid(int c, int r, int player) {
-
-        // Check if cell is empty and game is not over
-        if (board[r][c] == 0 && !gameOver) {
-
-            setPlayer(player);
-
-            // for loop to: go through one direction at a time
-            for (int dir = 0; dir < 8; dir++) {
-                int x = c + dCol[dir];
-                int y = r + dRow[dir];
-                // control whether there has at least been one opponent detected in between
-                boolean hasOpponent = false;
-
-                // control if coordinates x and y are out of bound
-                while (x >= 0 && x < 8 && y >= 0 && y < 8) {
-
-                    /* if the adjacent piece is an opponent, switch
-                    hasOpponent to true and move on
-                     */
-                    if (board[y][x] == opponent) {
-                        hasOpponent = true;
-                    /* if the adjacent piece is player AND hasOpponent
-                    is true (meaning there has been at least one opponent
-                    detected some time before this, then return true
-                     */
-                    } else if (board[y][x] == player && hasOpponent) {
-                        return true;
-                    /* if none of those things are true, meaning adjacent
-                    piece is either player or empty, then return false
-                     */
-                    } else {
-                        break;
-                    }
-
-                    // keep moving the coordinates in the current direction
-                    x += dCol[dir];
-                    y += dRow[dir];
-                }
-
+        if (gameOver || c < 0 || c >= size || r < 0 || r >= size) {
+            return false;
+        }
+        if (wide != null) {
+            if ((player == 1) == player1) {
+                return WideBitboard.get(wideLegal, r * size + c);
             }
+            return wide.flips(r * size + c, wideDiscs(player), wideDiscs(3 - player),
+                    wide.newBitset()) != 0;
         }
-        return false;
+        // the legal moves of the player to move are already known
+        if ((player == 1) == player1) {
+            return (legalMoves & Bitboard.square(c, r)) != 0;
+        }
+        // a move is valid exactly when it flips something
+        return Bitboard.flips(Bitboard.index(c, r), discs(player), discs(3 - player)) != 0;
     }
 
     /**
      * Method flipPiece
-     * 1. Return a boolean: true if a piece could be flipped, false otherwise
-     * 2. Flip opponent's piece in every available direction
+     * 1. Flip opponent's piece in every available direction
+     * 2. The flips for all 8 directions are computed at once on the
+     * bitboards and applied with a single xor per side
      */
     public void flipPiece(int c, int r, int player) {
+        if (wide != null) {
+            flipWidePiece(r * size + c, player);
+            return;
+        }
+        // the piece at (c, r) must not block the walk, so look from an empty cell
+        long bit = Bitboard.square(c, r);
+        long flipped = Bitboard.flips(Bitboard.index(c, r),
+                discs(player) & ~bit, discs(3 - player) & ~bit);
+        black ^= flipped;
+        white ^= flipped;
+
+        int numFlipped = Long.bitCount(flipped);
+        if (player == 1) {
+            numPlayer1 += numFlipped;
+            numPlayer2 -= numFlipped;
+        } else {
+            numPlayer2 += numFlipped;
+            numPlayer1 -= numFlipped;
+        }
+        hash ^= Zobrist.flips(flipped);
+        legalMoves = player1 ? Bitboard.legalMoves(black, white)
+                : Bitboard.legalMoves(white, black);
+    }
 
-        setPlayer(player);
-
-        // the logic here is similar to isValid
-        for (int dir = 0; dir < 8; dir++) {
-            int x = c + dCol[dir];
-            int y = r + dRow[dir];
-            boolean hasOpponent = false;
-            // holds all the pieces needed to be flipped
-            List<int[]> piecesToFlip = new ArrayList<>();
-
-            while (x >= 0 && x < 8 && y >= 0 && y < 8) {
-                if (board[y][x] == opponent) {
-                    hasOpponent = true;
-                    // if an opponent is detected, add the coordinate to the list
-                    piecesToFlip.add(new int[]{y, x});
-                } else if (board[y][x] == player && hasOpponent) {
-                    /* when reach a player piece after opponent pieces
-                    are detected, flip all the opponent pieces.
-                     */
-                    for (int[] i : piecesToFlip) {
-                        board[i[0]][i[1]] = player;
-                    }
-                    break;
-                } else {
-                    break;
-                }
-                x += dCol[dir];
-                y += dRow[dir];
-            }
-
+    private void flipWidePiece(int sq, int player) {
+        long[] own = wideDiscs(player);
+        long[] opp = wideDiscs(3 - player);
+        // as above, look from an empty cell
+        boolean ownHad = WideBitboard.get(own, sq);
+        boolean oppHad = WideBitboard.get(opp, sq);
+        own[sq >>> 6] &= ~(1L << sq);
+        opp[sq >>> 6] &= ~(1L << sq);
+        long[] flipped = wide.newBitset();
+        int numFlipped = wide.flips(sq, own, opp, flipped);
+        for (int w = 0; w < flipped.length; w++) {
+            own[w] |= flipped[w];
+            opp[w] &= ~flipped[w];
+        }
+        if (ownHad) {
+            WideBitboard.set(own, sq);
+        } else if (oppHad) {
+            WideBitboard.set(opp, sq);
         }
+        if (player == 1) {
+            numPlayer1 += numFlipped;
+            numPlayer2 -= numFlipped;
+        } else {
+            numPlayer2 += numFlipped;
+            numPlayer1 -= numFlipped;
+        }
+        wide.legalMoves(player1 ? wideBlack : wideWhite, player1 ? wideWhite : wideBlack,
+                wideLegal);
     }
 
     /**
      * playTurn allows players to play a turn. Returns true if the move is
      * successful and false if a player tries to play in a location that is
      * taken or after the game has ended. If the turn is successful and the game
-     * has not ended, the player is changed. If the turn is unsuccessful or the
-     * game has ended, the player is not changed.
+     * has not ended, the player is changed - unless the other player has no
+     * valid move, in which case they pass and the same player moves again.
+     * If the turn is unsuccessful or the game has ended, the player is not
+     * changed.
      *
      * @param c column to play in
      * @param r row to play in
      * @return whether the turn was successful
      *
      * Note: so playTurn should
-     * 1. Validate if a move is valid by calling isValid
-     * 2. Flip the piece between it by calling flipPiece
+     * 1. Compute the pieces to flip once: an empty set means the move
+     * is not valid, so no separate isValid walk is needed
+     * 2. Place the piece and apply every flip with one update per side
      * 3. Return true of a move has been successfully made, false otherwise
+     *
+     * The whole move path works on primitives only and allocates nothing.
      */
     public boolean playTurn(int c, int r) {
 
@@ -215,43 +386,243 @@ public class Othello {
             currentPlayer = 2;
         }
 
-        if (isValid(c, r, currentPlayer)) {
-            board[r][c] = currentPlayer;
-            flipPiece(c, r, currentPlayer);
-            if (checkWinner() == 0) {
-                player1 = !player1;
+        if (gameOver || c < 0 || c >= size || r < 0 || r >= size) {
+            return false;
+        }
+
+        int sq = r * size + c;
+        boolean legal = wide != null ? WideBitboard.get(wideLegal, sq)
+                : (legalMoves & Bitboard.square(c, r)) != 0;
+        if (!legal) {
+            return false;
+        }
+        /* Every move is counted here, and the count is added to EngineStats
+        every 16th move and at the end of the game. Only those 16th moves
+        are timed: reading the clock or a shared counter costs more than
+        the move itself.
+         */
+        boolean timed = EngineStats.ENABLED && ++unreportedMoves == 16;
+        long started = timed ? System.nanoTime() : 0;
+        // playing the move that was undone keeps the rest for redo
+        boolean redoing = numTurns < lastTurn && historyMove(numTurns) == sq;
+        if (wide != null) {
+            makeWideMove(sq, currentPlayer);
+        } else {
+            makeMove(sq, currentPlayer);
+        }
+        if (!redoing) {
+            lastTurn = numTurns;
+        }
+        if (timed) {
+            EngineStats.movePlayed(System.nanoTime() - started);
+        }
+        if (EngineStats.ENABLED && (timed || gameOver)) {
+            EngineStats.movesPlayed(unreportedMoves);
+            unreportedMoves = 0;
+        }
+        return true;
+    }
+
+    /* makeMove plays a valid move and records it in the history, with
+    what undo needs to take it back.
+     */
+    private void makeMove(int sq, int currentPlayer) {
+        if (numTurns == moves.length) {
+            moves = Arrays.copyOf(moves, numTurns * 2);
+            flippedHistory = Arrays.copyOf(flippedHistory, numTurns * 2);
+            moverHistory = Arrays.copyOf(moverHistory, numTurns * 2);
+        }
+        long placed = 1L << sq;
+        long flipped = Bitboard.flips(sq, discs(currentPlayer), discs(3 - currentPlayer));
+        moves[numTurns] = (byte) sq;
+        flippedHistory[numTurns] = flipped;
+        moverHistory[numTurns] = player1;
+        numTurns++;
+
+        // one new piece for the player, every flipped piece changes sides
+        int numFlipped = Long.bitCount(flipped);
+        if (currentPlayer == 1) {
+            black |= placed | flipped;
+            white &= ~flipped;
+            numPlayer1 += numFlipped + 1;
+            numPlayer2 -= numFlipped;
+        } else {
+            white |= placed | flipped;
+            black &= ~flipped;
+            numPlayer2 += numFlipped + 1;
+            numPlayer1 -= numFlipped;
+        }
+        hash ^= Zobrist.disc(player1, sq) ^ Zobrist.flips(flipped);
+
+        /* Hand the turn over. If the opponent has no valid move they
+        pass; if neither player can move, the game is over.
+         */
+        long mover = discs(currentPlayer);
+        long other = discs(3 - currentPlayer);
+        legalMoves = Bitboard.legalMoves(other, mover);
+        if (legalMoves != 0) {
+            player1 = !player1;
+            hash ^= Zobrist.SIDE;
+        } else {
+            legalMoves = Bitboard.legalMoves(mover, other);
+            if (legalMoves == 0) {
+                gameOver = true;
+            }
+        }
+    }
+
+    // makeWideMove is makeMove for the other board sizes
+    private void makeWideMove(int sq, int currentPlayer) {
+        if (wideFlipped[numTurns] == null) {
+            wideFlipped[numTurns] = wide.newBitset();
+        }
+        long[] own = wideDiscs(currentPlayer);
+        long[] opp = wideDiscs(3 - currentPlayer);
+        long[] flipped = wideFlipped[numTurns];
+        int numFlipped = wide.flips(sq, own, opp, flipped);
+        wideMoves[numTurns] = sq;
+        moverHistory[numTurns] = player1;
+        numTurns++;
+
+        for (int w = 0; w < flipped.length; w++) {
+            own[w] |= flipped[w];
+            opp[w] &= ~flipped[w];
+        }
+        WideBitboard.set(own, sq);
+        if (currentPlayer == 1) {
+            numPlayer1 += numFlipped + 1;
+            numPlayer2 -= numFlipped;
+        } else {
+            numPlayer2 += numFlipped + 1;
+            numPlayer1 -= numFlipped;
+        }
+
+        wide.legalMoves(opp, own, wideLegal);
+        if (!WideBitboard.isEmpty(wideLegal)) {
+            player1 = !player1;
+        } else {
+            wide.legalMoves(own, opp, wideLegal);
+            if (WideBitboard.isEmpty(wideLegal)) {
+                gameOver = true;
             }
+        }
+    }
+
+    // historyMove returns the square of move number turn in the history
+    private int historyMove(int turn) {
+        return wide != null ? wideMoves[turn] : moves[turn] & 0xFF;
+    }
+
+    /**
+     * undo takes back the last move in the history: the placed disc is
+     * removed, the flipped discs change back and the player who made the
+     * move is to move again (so passes are undone too). It costs the same
+     * as playTurn, whatever the length of the game.
+     *
+     * @return true if a move was undone, false if there was none
+     */
+    public boolean undo() {
+        if (numTurns == 0) {
+            return false;
+        }
+        numTurns--;
+        if (wide != null) {
+            undoWideMove();
             return true;
         }
-        return false;
+        int sq = moves[numTurns] & 0xFF;
+        long placed = 1L << sq;
+        long flipped = flippedHistory[numTurns];
+        boolean mover = moverHistory[numTurns];
+
+        int numFlipped = Long.bitCount(flipped);
+        if (mover) {
+            black &= ~(placed | flipped);
+            white |= flipped;
+            numPlayer1 -= numFlipped + 1;
+            numPlayer2 += numFlipped;
+        } else {
+            white &= ~(placed | flipped);
+            black |= flipped;
+            numPlayer2 -= numFlipped + 1;
+            numPlayer1 += numFlipped;
+        }
+        // the turn only changed hands if the opponent did not have to pass
+        if (player1 != mover) {
+            hash ^= Zobrist.SIDE;
+        }
+        hash ^= Zobrist.disc(mover, sq) ^ Zobrist.flips(flipped);
+        player1 = mover;
+        gameOver = false;
+        legalMoves = mover ? Bitboard.legalMoves(black, white) : Bitboard.legalMoves(white, black);
+        return true;
+    }
+
+    private void undoWideMove() {
+        int sq = wideMoves[numTurns];
+        long[] flipped = wideFlipped[numTurns];
+        boolean mover = moverHistory[numTurns];
+        long[] own = mover ? wideBlack : wideWhite;
+        long[] opp = mover ? wideWhite : wideBlack;
+        int numFlipped = WideBitboard.count(flipped);
+        for (int w = 0; w < flipped.length; w++) {
+            own[w] &= ~flipped[w];
+            opp[w] |= flipped[w];
+        }
+        own[sq >>> 6] &= ~(1L << sq);
+        if (mover) {
+            numPlayer1 -= numFlipped + 1;
+            numPlayer2 += numFlipped;
+        } else {
+            numPlayer2 -= numFlipped + 1;
+            numPlayer1 += numFlipped;
+        }
+        player1 = mover;
+        gameOver = false;
+        wide.legalMoves(own, opp, wideLegal);
     }
 
     /**
-     * checkWinner checks whether the game has reached a win condition.
-     * checkWinner only looks for horizontal wins.
+     * redo plays again the last move taken back with undo. Any other move
+     * made after an undo (through playTurn) ends what can be redone.
+     *
+     * @return true if a move was redone, false if there was none
+     */
+    public boolean redo() {
+        if (numTurns == lastTurn) {
+            return false;
+        }
+        if (wide != null) {
+            makeWideMove(wideMoves[numTurns], player1 ? 1 : 2);
+        } else {
+            makeMove(moves[numTurns] & 0xFF, player1 ? 1 : 2);
+        }
+        return true;
+    }
+
+    public boolean canUndo() {
+        return numTurns > 0;
+    }
+
+    public boolean canRedo() {
+        return numTurns < lastTurn;
+    }
+
+    /**
+     * checkWinner checks whether the game has reached a win condition:
+     * the game ends when the player to move has no valid move (this
+     * includes a full board). It only reads the cached counts and legal
+     * moves, so it does not scan the board.
      *
      * @return 0 if nobody has won yet, 1 if player 1 has won, and 2 if player 2
      *         has won, 3 if the game hits stalemate
      */
     public int checkWinner() {
 
-        int numPlayer1 = 0;
-        int numPlayer2 = 0;
-
-        for (int row = 0; row < 8; row++) {
-            for (int col = 0; col < 8; col++) {
-                if (board[row][col] == 1) {
-                    numPlayer1++;
-                } else if (board[row][col] == 2) {
-                    numPlayer2++;
-                }
-            }
-        }
-
-        /* If we are out of move (total moves = 64) check the winner
+        /* If we are out of move check the winner
         If not, return 0 and continue the game
          */
-        if (numPlayer1 + numPlayer2 >= 64 || !hasValidMove()) {
+        if (gameOver || !hasLegalMoves()) {
             gameOver = true;
             if (numPlayer1 > numPlayer2) {
                 return 1;
@@ -265,20 +636,7 @@ public class Othello {
     }
 
     public boolean hasValidMove() {
-        int currentPlayer;
-        if (player1) {
-            currentPlayer = 1;
-        } else {
-            currentPlayer = 2;
-        }
-        for (int row = 0; row < 8; row++) {
-            for (int col = 0; col < 8; col++) {
-                if (isValid(col, row, currentPlayer)) {
-                    return true;
-                }
-            }
-        }
-        return false;
+        return !gameOver && hasLegalMoves();
     }
 
     /**
@@ -286,6 +644,7 @@ public class Othello {
      * for debugging.
      */
     public void printGameState() {
+        int[][] board = getBoard();
         System.out.println("\n\nTurn " + numTurns + ":\n");
         for (int i = 0; i < board.length; i++) {
             for (int j = 0; j < board[i].length; j++) {
@@ -323,15 +682,182 @@ public class Othello {
      *         game board. 0 = empty, 1 = Player 1, 2 = Player 2
      */
     public int getCell(int c, int r) {
-        return board[r][c];
+        if (wide != null) {
+            int sq = r * size + c;
+            if (WideBitboard.get(wideBlack, sq)) {
+                return 1;
+            } else if (WideBitboard.get(wideWhite, sq)) {
+                return 2;
+            }
+            return 0;
+        }
+        long bit = Bitboard.square(c, r);
+        if ((black & bit) != 0) {
+            return 1;
+        } else if ((white & bit) != 0) {
+            return 2;
+        }
+        return 0;
     }
 
+    /**
+     * getPieceCount is a getter for the number of pieces a player has on
+     * the board. The count is maintained by playTurn, so this is O(1).
+     *
+     * @param player 1 for Player 1, 2 for Player 2
+     * @return the number of pieces of that player
+     */
+    public int getPieceCount(int player) {
+        return player == 1 ? numPlayer1 : numPlayer2;
+    }
+
+    /**
+     * getLegalMoves is a getter for the valid moves of the player whose
+     * turn it is, as a bitboard: bit (r * 8 + c) is set if playing at
+     * column c, row r is valid. It is 0 once the game is over.
+     *
+     * @throws IllegalStateException if the board is not 8x8 (use isValid)
+     */
+    public long getLegalMoves() {
+        requireStandard();
+        return gameOver ? 0 : legalMoves;
+    }
+
+    /**
+     * getBoard builds a size x size array view of the board. The array is a
+     * copy: changing it does not change the game until it is passed back
+     * through updateBoard.
+     *
+     * @return board[r][c] with 0 = empty, 1 = Player 1, 2 = Player 2
+     */
     public int[][] getBoard() {
+        int[][] board = new int[size][size];
+        for (int r = 0; r < size; r++) {
+            for (int c = 0; c < size; c++) {
+                board[r][c] = getCell(c, r);
+            }
+        }
         return board;
     }
 
+    /**
+     * updateBoard replaces the position with the contents of a square
+     * array in the same format as getBoard. The board takes the array's
+     * size.
+     *
+     * @throws IllegalArgumentException if the array is not a valid size
+     */
     public void updateBoard(int[][] board) {
-        this.board = board;
+        if (board.length != size) {
+            changeSize(board.length);
+        }
+        if (wide != null) {
+            Arrays.fill(wideBlack, 0);
+            Arrays.fill(wideWhite, 0);
+            for (int r = 0; r < size; r++) {
+                for (int c = 0; c < size; c++) {
+                    if (board[r][c] == 1) {
+                        WideBitboard.set(wideBlack, r * size + c);
+                    } else if (board[r][c] == 2) {
+                        WideBitboard.set(wideWhite, r * size + c);
+                    }
+                }
+            }
+            refresh();
+            startHistory();
+            return;
+        }
+        long newBlack = 0;
+        long newWhite = 0;
+        for (int r = 0; r < 8; r++) {
+            for (int c = 0; c < 8; c++) {
+                if (board[r][c] == 1) {
+                    newBlack |= Bitboard.square(c, r);
+                } else if (board[r][c] == 2) {
+                    newWhite |= Bitboard.square(c, r);
+                }
+            }
+        }
+        black = newBlack;
+        white = newWhite;
+        refresh();
+        startHistory();
+    }
+
+    /**
+     * getHash is a getter for the Zobrist hash of the current position
+     * (discs and player to move). It is the same value Zobrist.hash gives.
+     *
+     * @throws IllegalStateException if the board is not 8x8
+     */
+    public long getHash() {
+        requireStandard();
+        return hash;
+    }
+
+    /**
+     * toPosition exports the current state as an immutable Position that
+     * can be handed to other threads.
+     *
+     * @throws IllegalStateException if the board is not 8x8
+     */
+    public Position toPosition() {
+        requireStandard();
+        return new Position(black, white, player1);
+    }
+
+    /**
+     * setPosition imports a Position. As in playTurn, if the player to move
+     * has no valid move the turn passes to the opponent, and if neither
+     * player can move the game is over. The board becomes 8x8 if it was
+     * another size.
+     */
+    public void setPosition(Position position) {
+        if (wide != null) {
+            changeSize(STANDARD_SIZE);
+        }
+        black = position.getBlack();
+        white = position.getWhite();
+        player1 = position.getCurrentPlayer();
+        gameOver = false;
+        refresh();
+        if (legalMoves == 0) {
+            player1 = !player1;
+            refresh();
+            gameOver = legalMoves == 0;
+        }
+        startHistory();
+    }
+
+    /**
+     * getNumTurns is a getter for the number of moves made since the start
+     * position (passes do not count).
+     */
+    public int getNumTurns() {
+        return numTurns;
+    }
+
+    /**
+     * getMoveHistory returns a copy of the moves made since the start
+     * position, one byte per move (the square index r * 8 + c).
+     *
+     * @throws IllegalStateException if the board is not 8x8
+     */
+    public byte[] getMoveHistory() {
+        requireStandard();
+        return Arrays.copyOf(moves, numTurns);
+    }
+
+    /**
+     * getStartPosition returns the position the move history starts from:
+     * the standard start after reset, or whatever was set with
+     * updateBoard, setPosition or loaded from an old text save.
+     *
+     * @throws IllegalStateException if the board is not 8x8
+     */
+    public Position getStartPosition() {
+        requireStandard();
+        return new Position(startBlack, startWhite, startPlayer1);
     }
 
     public boolean getGameStatus() {
@@ -342,32 +868,60 @@ public class Othello {
         this.gameOver = gameOver;
     }
 
-    // Saving game state
+    /**
+     * saveGame saves the game in the binary game record format (see
+     * GameRecord): the start position and every move made since. Boards
+     * of other sizes are saved in the text format instead (see loadGame),
+     * without their move history.
+     */
     public void saveGame(String fileName) throws IOException {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(fileName))) {
-            // Save the board state
-            for (int[] row : board) {
-                for (int cell : row) {
-                    writer.print(cell + " ");
+        if (wide != null) {
+            saveTextGame(Paths.get(fileName));
+        } else {
+            GameRecord.write(this, Paths.get(fileName));
+        }
+    }
+
+    // saveTextGame writes the text format that loadTextGame reads
+    private void saveTextGame(Path file) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            for (int r = 0; r < size; r++) {
+                StringBuilder line = new StringBuilder();
+                for (int c = 0; c < size; c++) {
+                    line.append(c == 0 ? "" : " ").append(getCell(c, r));
                 }
-                writer.println(); // new line after each row
+                writer.write(line.toString());
+                writer.newLine();
             }
-
-            // Save additional game state variables
-            writer.println(numTurns);
-            writer.println(player1);
-            writer.println(gameOver);
+            writer.write(numTurns + "\n" + player1 + "\n" + gameOver + "\n");
         }
     }
 
+    /**
+     * loadGame loads a saved game. Both the binary game record format and
+     * the text format (a line of numbers for each row of the board, then
+     * the turn count, the player to move and whether the game is over)
+     * are read. The board takes the size of the saved game.
+     *
+     * @throws IOException if the file cannot be read or is damaged
+     */
     public void loadGame(String fileName) throws IOException {
+        Path file = Paths.get(fileName);
+        if (GameRecord.isGameRecord(file)) {
+            GameRecord.read(file, this);
+        } else {
+            loadTextGame(file);
+        }
+    }
+
+    // loadTextGame reads the old text format; it has no move history
+    private void loadTextGame(Path file) throws IOException {
 
         // Create a buffered reader
-        try (BufferedReader reader = new BufferedReader(new FileReader(fileName))) {
-            // Reset board
-            board = new int[8][8];
-            // Load board state
-            for (int r = 0; r < 8; r++) {
+        try (BufferedReader reader = Files.newBufferedReader(file)) {
+            // Load board state; the first row tells the size of the board
+            int[][] board = null;
+            for (int r = 0; board == null || r < board.length; r++) {
                 // Read the line first
                 String line = reader.readLine();
                 if (line == null) {
@@ -375,17 +929,23 @@ public class Othello {
                 }
                 // separate into tokens to loop through
                 String[] tokens = line.trim().split("\\s+");
-                for (int c = 0; c < 8; c++) {
+                if (board == null) {
+                    board = new int[tokens.length][tokens.length];
+                }
+                for (int c = 0; c < board.length; c++) {
                     board[r][c] = Integer.parseInt(tokens[c]);
                 }
             }
+            updateBoard(board);
 
-            // Load additional game state variables
-            numTurns = Integer.parseInt(reader.readLine());
+            // Load additional game state variables (the old turn count is not used)
+            reader.readLine();
             player1 = Boolean.parseBoolean(reader.readLine());
             gameOver = Boolean.parseBoolean(reader.readLine());
-        } catch (IOException e) {
-            System.err.println("Error loading game");
+            refresh();
+            startHistory();
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Not a saved Othello game: " + file, e);
         }
     }
 }
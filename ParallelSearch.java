@@ -0,0 +1,186 @@
+package org.cis1200.othello;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * ParallelSearch runs one Search on several cores at once ("Lazy SMP").
+ *
+ * The main thread and its helper threads all search the same position
+ * with iterative deepening and share one lock-free TranspositionTable.
+ * Every result one thread stores can cut off work in the others, and
+ * odd-numbered helpers start one depth ahead so the threads spread over
+ * different depths. When the main thread is done the helpers are
+ * stopped, and the deepest completed result wins.
+ *
+ * Helper threads are daemon threads kept in a pool between searches.
+ * Call shutdown when the ParallelSearch is no longer needed.
+ */
+public class ParallelSearch {
+
+    private final int threads;
+    private final TranspositionTable table;
+    private final ExecutorService helpers;
+    private volatile PatternEvaluator evaluator;
+
+    /**
+     * Creates a parallel search.
+     *
+     * @param threads number of threads (1 = the calling thread only)
+     * @param table transposition table shared by all threads
+     */
+    public ParallelSearch(int threads, TranspositionTable table) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Need at least one thread");
+        }
+        this.threads = threads;
+        this.table = table;
+        if (threads > 1) {
+            helpers = Executors.newFixedThreadPool(threads - 1, r -> {
+                Thread t = new Thread(r, "search-helper");
+                t.setDaemon(true);
+                return t;
+            });
+        } else {
+            helpers = null;
+        }
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * setEvaluator sets the pattern weights every thread evaluates with
+     * (null for the built-in evaluation; see Search.setEvaluator).
+     */
+    public void setEvaluator(PatternEvaluator evaluator) {
+        this.evaluator = evaluator;
+    }
+
+    /**
+     * iterate searches the position on all threads until the time budget
+     * is used up or maxDepth is done (see Search.iterate). The node count
+     * of the result is the total over all threads.
+     */
+    public SearchResult iterate(Position position, long budgetMillis, int maxDepth) {
+        return iterate(new Search(table), position, budgetMillis, maxDepth);
+    }
+
+    /* iterate with the main thread's Search made by the caller (on this
+    ParallelSearch's table), so that the caller can stop it: once the main
+    search stops, so do the helpers.
+     */
+    SearchResult iterate(Search main, Position position, long budgetMillis, int maxDepth) {
+        PatternEvaluator patterns = evaluator;
+        main.setEvaluator(patterns);
+        if (helpers == null) {
+            return main.iterate(position, budgetMillis, maxDepth);
+        }
+
+        // the table's age is bumped once, before any thread searches
+        table.newSearch();
+        main.keepTableAge();
+
+        List<Search> searches = new ArrayList<>();
+        List<Future<SearchResult>> results = new ArrayList<>();
+        for (int i = 1; i < threads; i++) {
+            Search search = new Search(table);
+            search.setEvaluator(patterns);
+            search.helper(1 + i % 2);
+            searches.add(search);
+            results.add(helpers.submit(() -> search.iterate(position, budgetMillis, maxDepth)));
+        }
+
+        SearchResult best = main.iterate(position, budgetMillis, maxDepth);
+        long nodes = best.getNodes();
+        for (Search search : searches) {
+            search.stop();
+        }
+        for (Future<SearchResult> future : results) {
+            SearchResult result;
+            try {
+                result = future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Search helper failed", e.getCause());
+            }
+            nodes += result.getNodes();
+            if (result.getDepth() > best.getDepth()) {
+                best = result;
+            }
+        }
+        return new SearchResult(best.getMove(), best.getScore(), best.getDepth(), nodes,
+                best.getMillis());
+    }
+
+    /**
+     * shutdown stops the helper threads.
+     */
+    public void shutdown() {
+        if (helpers != null) {
+            helpers.shutdownNow();
+        }
+    }
+
+    /**
+     * Measures the speedup of parallel search over a single thread: the
+     * time to finish a fixed depth on a set of midgame positions.
+     *
+     * java org.cis1200.othello.ParallelSearch [depth] [threads...]
+     */
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 11;
+        int[] counts;
+        if (args.length > 1) {
+            counts = new int[args.length - 1];
+            for (int i = 1; i < args.length; i++) {
+                counts[i - 1] = Integer.parseInt(args[i]);
+            }
+        } else {
+            int cores = Runtime.getRuntime().availableProcessors();
+            counts = cores > 1 ? new int[] {1, 2, cores} : new int[] {1};
+        }
+
+        // random but repeatable positions 20 moves into the game
+        Random random = new Random(20);
+        Position[] positions = new Position[8];
+        for (int i = 0; i < positions.length; i++) {
+            Position p = Position.start();
+            for (int ply = 0; ply < 20 && !p.isGameOver(); ply++) {
+                Position[] children = p.children();
+                p = children[random.nextInt(children.length)];
+            }
+            positions[i] = p;
+        }
+
+        double baseline = 0;
+        for (int count : counts) {
+            ParallelSearch search = new ParallelSearch(count, new TranspositionTable(64));
+            // warm up the JIT, then clear what the warm-up stored
+            search.iterate(positions[0], Long.MAX_VALUE, depth - 2);
+            search.table.clear();
+
+            long nodes = 0;
+            long start = System.nanoTime();
+            for (Position p : positions) {
+                nodes += search.iterate(p, Long.MAX_VALUE, depth).getNodes();
+                search.table.clear();
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            search.shutdown();
+            if (baseline == 0) {
+                baseline = seconds;
+            }
+            System.out.printf("%2d threads: depth %d in %.2f s, %,.0f nodes/sec, speedup %.2fx%n",
+                    count, depth, seconds, nodes / seconds, baseline / seconds);
+        }
+    }
+}
@@ -0,0 +1,411 @@
+package org.cis1200.othello;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * PatternEvaluator scores a position by looking up lines and corner
+ * regions of the board in tables of weights.
+ *
+ * A pattern is a fixed list of squares, such as the top edge or the 3x3
+ * block in a corner. The contents of its squares (empty, Black or White)
+ * read as a base-3 number are an index into that pattern's table, and the
+ * score is the sum of the weights found, from Black's point of view. Every
+ * pattern is used in all its rotations and reflections on the board (46
+ * instances in all), each with the same table.
+ *
+ * The weights can differ by game phase (how many discs are on the board),
+ * since a region that is good early on may be bad near the end.
+ *
+ * A PatternEvaluator only reads its weights, so one can be shared by any
+ * number of threads. For search, a Tracker keeps the indices of one board
+ * up to date as moves are made and taken back, so evaluating is just the
+ * 46 lookups.
+ *
+ * Weights file layout (big-endian): magic "OTHW", version, number of
+ * phases (4 bytes each), then for every phase and every pattern in order
+ * one 16-bit weight per index.
+ */
+public final class PatternEvaluator {
+
+    /**
+     * Weights file loaded by loadDefault.
+     */
+    public static final String DEFAULT_FILE = "othello.weights";
+
+    static final int MAGIC = 0x4F544857; // "OTHW"
+    static final int VERSION = 1;
+
+    /* The patterns, each as its squares (column, row) in one corner or
+    edge of the board; the others are found by symmetry:
+    1. the top edge with both X-squares
+    2. the 2x5 block in a corner
+    3. the 3x3 block in a corner
+    4. the 2nd, 3rd and 4th rows
+    5. the diagonals of length 8, 7, 6, 5 and 4
+     */
+    private static final int[][][] PATTERNS = {
+        {{0, 0}, {1, 0}, {2, 0}, {3, 0}, {4, 0}, {5, 0}, {6, 0}, {7, 0}, {1, 1}, {6, 1}},
+        {{0, 0}, {1, 0}, {2, 0}, {3, 0}, {4, 0}, {0, 1}, {1, 1}, {2, 1}, {3, 1}, {4, 1}},
+        {{0, 0}, {1, 0}, {2, 0}, {0, 1}, {1, 1}, {2, 1}, {0, 2}, {1, 2}, {2, 2}},
+        {{0, 1}, {1, 1}, {2, 1}, {3, 1}, {4, 1}, {5, 1}, {6, 1}, {7, 1}},
+        {{0, 2}, {1, 2}, {2, 2}, {3, 2}, {4, 2}, {5, 2}, {6, 2}, {7, 2}},
+        {{0, 3}, {1, 3}, {2, 3}, {3, 3}, {4, 3}, {5, 3}, {6, 3}, {7, 3}},
+        {{0, 0}, {1, 1}, {2, 2}, {3, 3}, {4, 4}, {5, 5}, {6, 6}, {7, 7}},
+        {{0, 1}, {1, 2}, {2, 3}, {3, 4}, {4, 5}, {5, 6}, {6, 7}},
+        {{0, 2}, {1, 3}, {2, 4}, {3, 5}, {4, 6}, {5, 7}},
+        {{0, 3}, {1, 4}, {2, 5}, {3, 6}, {4, 7}},
+        {{0, 4}, {1, 5}, {2, 6}, {3, 7}},
+    };
+
+    // table size of each pattern: 3 to the power of its number of squares
+    static final int[] TABLE_SIZES;
+    // for each instance: its pattern and its squares (most significant digit first)
+    static final int[] INSTANCE_PATTERN;
+    static final int[][] INSTANCE_SQUARES;
+    // for each square: the instances it is in, and its power of 3 in each
+    private static final int[][] SQUARE_INSTANCES = new int[64][];
+    private static final int[][] SQUARE_POWERS = new int[64][];
+
+    static {
+        TABLE_SIZES = new int[PATTERNS.length];
+        List<int[]> instances = new ArrayList<>();
+        List<Integer> patternOf = new ArrayList<>();
+        for (int p = 0; p < PATTERNS.length; p++) {
+            TABLE_SIZES[p] = pow3(PATTERNS[p].length);
+            List<Long> seen = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int[] squares = new int[PATTERNS[p].length];
+                long set = 0;
+                for (int i = 0; i < squares.length; i++) {
+                    squares[i] = transform(t, PATTERNS[p][i][0], PATTERNS[p][i][1]);
+                    set |= 1L << squares[i];
+                }
+                // symmetric patterns map onto themselves: keep each square set once
+                if (!seen.contains(set)) {
+                    seen.add(set);
+                    instances.add(squares);
+                    patternOf.add(p);
+                }
+            }
+        }
+        INSTANCE_SQUARES = instances.toArray(new int[0][]);
+        INSTANCE_PATTERN = new int[patternOf.size()];
+        for (int i = 0; i < INSTANCE_PATTERN.length; i++) {
+            INSTANCE_PATTERN[i] = patternOf.get(i);
+        }
+
+        for (int sq = 0; sq < 64; sq++) {
+            List<int[]> uses = new ArrayList<>();
+            for (int i = 0; i < INSTANCE_SQUARES.length; i++) {
+                int[] squares = INSTANCE_SQUARES[i];
+                for (int j = 0; j < squares.length; j++) {
+                    if (squares[j] == sq) {
+                        uses.add(new int[] {i, pow3(squares.length - 1 - j)});
+                    }
+                }
+            }
+            SQUARE_INSTANCES[sq] = new int[uses.size()];
+            SQUARE_POWERS[sq] = new int[uses.size()];
+            for (int k = 0; k < uses.size(); k++) {
+                SQUARE_INSTANCES[sq][k] = uses.get(k)[0];
+                SQUARE_POWERS[sq][k] = uses.get(k)[1];
+            }
+        }
+    }
+
+    private static int pow3(int n) {
+        int result = 1;
+        for (int i = 0; i < n; i++) {
+            result *= 3;
+        }
+        return result;
+    }
+
+    // transform maps (c, r) by one of the 8 symmetries of the board
+    private static int transform(int t, int c, int r) {
+        if ((t & 1) != 0) {
+            c = 7 - c;
+        }
+        if ((t & 2) != 0) {
+            r = 7 - r;
+        }
+        if ((t & 4) != 0) {
+            int swap = c;
+            c = r;
+            r = swap;
+        }
+        return Bitboard.index(c, r);
+    }
+
+    /* Largest score an evaluation may give. The 46 weights could add up
+    to far more than Search.WIN, which the search would take for a proven
+    win or loss (and store as exact), so sums are clamped to stay clear
+    of every exact score.
+     */
+    static final int MAX_SCORE = Search.WIN - 64;
+
+    // weights[phase][pattern][index], from Black's point of view
+    private final short[][][] weights;
+
+    PatternEvaluator(short[][][] weights) {
+        if (weights.length == 0) {
+            throw new IllegalArgumentException("Need at least one phase");
+        }
+        for (short[][] phase : weights) {
+            for (int p = 0; p < PATTERNS.length; p++) {
+                if (phase[p].length != TABLE_SIZES[p]) {
+                    throw new IllegalArgumentException("Wrong table size for pattern " + p);
+                }
+            }
+        }
+        this.weights = weights;
+    }
+
+    /**
+     * standard returns an evaluator with hand-made weights: every square
+     * has a fixed value (corners high, the squares next to them negative)
+     * and a pattern's weight is the sum of its squares' values. This is
+     * what to use until weights have been trained.
+     */
+    public static PatternEvaluator standard() {
+        int[] squareValue = new int[64];
+        for (int sq = 0; sq < 64; sq++) {
+            squareValue[sq] = Search.squareWeight(sq);
+        }
+        short[][][] weights = new short[1][PATTERNS.length][];
+        for (int p = 0; p < PATTERNS.length; p++) {
+            int[] squares = INSTANCE_SQUARES[firstInstance(p)];
+            short[] table = new short[TABLE_SIZES[p]];
+            for (int index = 0; index < table.length; index++) {
+                double value = 0;
+                int rest = index;
+                for (int j = squares.length - 1; j >= 0; j--) {
+                    int digit = rest % 3;
+                    rest /= 3;
+                    // a square in several instances shares its value between them
+                    double share = (double) squareValue[squares[j]]
+                            / SQUARE_INSTANCES[squares[j]].length;
+                    value += digit == 1 ? share : digit == 2 ? -share : 0;
+                }
+                table[index] = (short) Math.round(value);
+            }
+            weights[0][p] = table;
+        }
+        return new PatternEvaluator(weights);
+    }
+
+    private static int firstInstance(int pattern) {
+        for (int i = 0; i < INSTANCE_PATTERN.length; i++) {
+            if (INSTANCE_PATTERN[i] == pattern) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("No such pattern: " + pattern);
+    }
+
+    /**
+     * load reads the weights from a file.
+     *
+     * @throws IOException if the file cannot be read or is not a weights file
+     */
+    public static PatternEvaluator load(Path file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        if (buffer.remaining() < 12 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IOException("Not a weights file: " + file);
+        }
+        int phases = buffer.getInt();
+        long perPhase = 0;
+        for (int size : TABLE_SIZES) {
+            perPhase += size;
+        }
+        if (phases < 1 || buffer.remaining() != phases * perPhase * Short.BYTES) {
+            throw new IOException("Weights file is damaged: " + file);
+        }
+        short[][][] weights = new short[phases][PATTERNS.length][];
+        for (int phase = 0; phase < phases; phase++) {
+            for (int p = 0; p < PATTERNS.length; p++) {
+                weights[phase][p] = new short[TABLE_SIZES[p]];
+                buffer.asShortBuffer().get(weights[phase][p]);
+                buffer.position(buffer.position() + TABLE_SIZES[p] * Short.BYTES);
+            }
+        }
+        return new PatternEvaluator(weights);
+    }
+
+    /**
+     * loadDefault loads DEFAULT_FILE if there is one, and otherwise
+     * returns the standard weights.
+     */
+    public static PatternEvaluator loadDefault() throws IOException {
+        Path file = Paths.get(DEFAULT_FILE);
+        return Files.exists(file) ? load(file) : standard();
+    }
+
+    /**
+     * write saves the weights to a file (replacing it).
+     */
+    public void write(Path file) throws IOException {
+        int size = 12;
+        for (int tableSize : TABLE_SIZES) {
+            size += weights.length * tableSize * Short.BYTES;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(weights.length);
+        for (short[][] phase : weights) {
+            for (short[] table : phase) {
+                buffer.asShortBuffer().put(table);
+                buffer.position(buffer.position() + table.length * Short.BYTES);
+            }
+        }
+        buffer.flip();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    public int getPhases() {
+        return weights.length;
+    }
+
+    /**
+     * phase returns the game phase of a position with the given number of
+     * discs on the board, for a table with the given number of phases.
+     */
+    static int phase(int discs, int phases) {
+        return Math.min(phases - 1, Math.max(0, discs - 4) * phases / 60);
+    }
+
+    /**
+     * indices computes the table index of every pattern instance on the
+     * board into out (one per instance).
+     */
+    static void indices(long black, long white, int[] out) {
+        for (int i = 0; i < INSTANCE_SQUARES.length; i++) {
+            int index = 0;
+            for (int sq : INSTANCE_SQUARES[i]) {
+                index = index * 3 + ((black >>> sq & 1) != 0 ? 1 : (white >>> sq & 1) != 0 ? 2 : 0);
+            }
+            out[i] = index;
+        }
+    }
+
+    // score sums the weights for the given indices, from Black's point of view
+    private int score(int[] indices, int discs) {
+        short[][] tables = weights[phase(discs, weights.length)];
+        int score = 0;
+        for (int i = 0; i < indices.length; i++) {
+            score += tables[INSTANCE_PATTERN[i]][indices[i]];
+        }
+        return clamp(score);
+    }
+
+    private static int clamp(int score) {
+        return Math.max(-MAX_SCORE, Math.min(MAX_SCORE, score));
+    }
+
+    /**
+     * evaluate scores a position from Black's point of view, computing
+     * every index from scratch (see Tracker for the incremental way).
+     * Like the Tracker, it allocates nothing.
+     */
+    public int evaluate(long black, long white) {
+        short[][] tables = weights[phase(Long.bitCount(black | white), weights.length)];
+        int score = 0;
+        for (int i = 0; i < INSTANCE_SQUARES.length; i++) {
+            int index = 0;
+            for (int sq : INSTANCE_SQUARES[i]) {
+                index = index * 3 + ((black >>> sq & 1) != 0 ? 1 : (white >>> sq & 1) != 0 ? 2 : 0);
+            }
+            score += tables[INSTANCE_PATTERN[i]][index];
+        }
+        return clamp(score);
+    }
+
+    /**
+     * evaluate scores a position for the player to move.
+     */
+    public int evaluate(Position position) {
+        int score = evaluate(position.getBlack(), position.getWhite());
+        return position.getCurrentPlayer() ? score : -score;
+    }
+
+    /**
+     * track starts a Tracker for the given board.
+     */
+    public Tracker track(long black, long white) {
+        return new Tracker(black, white);
+    }
+
+    /**
+     * Tracker keeps the pattern indices of one board up to date as moves
+     * are played and undone: a move only changes the instances through
+     * the placed and flipped squares. It is not thread-safe.
+     */
+    public final class Tracker {
+        private final int[] indices = new int[INSTANCE_SQUARES.length];
+        private int discs;
+
+        private Tracker(long black, long white) {
+            indices(black, white, indices);
+            discs = Long.bitCount(black | white);
+        }
+
+        /**
+         * play updates the indices for a move: a disc placed on sq by
+         * Black (or White), flipping the discs in flipped.
+         */
+        public void play(int sq, long flipped, boolean black) {
+            update(sq, flipped, black, 1);
+            discs++;
+        }
+
+        /**
+         * undo reverses play with the same arguments.
+         */
+        public void undo(int sq, long flipped, boolean black) {
+            update(sq, flipped, black, -1);
+            discs--;
+        }
+
+        /* update adds (direction 1) or takes back (direction -1) a move.
+        A placed disc adds its digit (1 for Black, 2 for White) times the
+        square's power of 3; a flip to Black changes the digit from 2 to 1
+        and a flip to White from 1 to 2.
+         */
+        private void update(int sq, long flipped, boolean black, int direction) {
+            int placed = (black ? 1 : 2) * direction;
+            int flip = (black ? -1 : 1) * direction;
+            int[] instances = SQUARE_INSTANCES[sq];
+            int[] powers = SQUARE_POWERS[sq];
+            for (int k = 0; k < instances.length; k++) {
+                indices[instances[k]] += placed * powers[k];
+            }
+            for (; flipped != 0; flipped &= flipped - 1) {
+                int f = Long.numberOfTrailingZeros(flipped);
+                instances = SQUARE_INSTANCES[f];
+                powers = SQUARE_POWERS[f];
+                for (int k = 0; k < instances.length; k++) {
+                    indices[instances[k]] += flip * powers[k];
+                }
+            }
+        }
+
+        /**
+         * evaluate scores the tracked board from Black's point of view.
+         */
+        public int evaluate() {
+            return score(indices, discs);
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package org.cis1200.othello;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * PatternTrainer fits PatternEvaluator weights to games the engine plays
+ * against itself, on one machine and without any other programs.
+ *
+ * Training has two steps, which can be run separately and repeated:
+ * 1. generate: plays self-play games on the Othello model on a pool of
+ * threads, and appends every position of every game with the game's
+ * final result to a data file
+ * 2. fit: fits the weights to the data file by least-squares regression
+ * (mini-batch gradient descent), then they can be written as a weights
+ * file for the engine
+ * fit reads the data file one mini-batch at a time, so the file can be
+ * far larger than memory.
+ *
+ * Self-play games start with a few random moves so that they differ, and
+ * then both sides search to a fixed depth with the given weights; training
+ * again on games played with the last weights improves them round by round.
+ *
+ * Data file layout, 17 bytes per position (big-endian): Black's discs (8),
+ * White's discs (8), and the final disc difference for Black (1, signed).
+ *
+ * java org.cis1200.othello.PatternTrainer generate data-file games [depth] [threads]
+ * java org.cis1200.othello.PatternTrainer fit data-file [epochs] [phases] [weights-file]
+ */
+public class PatternTrainer {
+
+    static final int RECORD_BYTES = 17;
+
+    // random moves at the start of every self-play game
+    private static final int RANDOM_MOVES = 8;
+
+    private static final int TABLE_MEGABYTES = 16;
+
+    // evaluation units per disc of final margin
+    private static final int DISC_VALUE = 100;
+
+    // positions per mini-batch, and how far each batch moves the weights
+    private static final int BATCH = 4096;
+    private static final float RATE = 0.02f;
+
+    private final PrintStream out;
+
+    /**
+     * Creates a trainer that reports its progress to out.
+     */
+    public PatternTrainer(PrintStream out) {
+        this.out = out;
+    }
+
+    /**
+     * generate plays self-play games on a pool of threads and appends
+     * their positions to the data file (creating it if needed).
+     *
+     * @param data data file to append to
+     * @param games number of games to play
+     * @param depth search depth for every move after the random ones
+     * @param threads number of games played at once
+     * @param player weights the games are played with (null for the
+     * built-in evaluation)
+     * @return the number of positions written
+     */
+    public long generate(Path data, int games, int depth, int threads, PatternEvaluator player)
+            throws IOException, InterruptedException {
+        if (games < 0 || depth < 1 || threads < 1) {
+            throw new IllegalArgumentException("Bad games, depth or threads");
+        }
+        long start = System.nanoTime();
+        AtomicInteger next = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try (FileChannel channel = FileChannel.open(data, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            // every thread plays games until there are none left
+            List<Future<Long>> workers = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                workers.add(pool.submit(() -> {
+                    Search search = new Search(new TranspositionTable(TABLE_MEGABYTES));
+                    search.setEvaluator(player);
+                    long positions = 0;
+                    int number;
+                    while ((number = next.getAndIncrement()) < games) {
+                        ByteBuffer game = playGame(search, depth);
+                        positions += game.remaining() / RECORD_BYTES;
+                        append(channel, game);
+                        if ((number + 1) % 100 == 0) {
+                            out.println((number + 1) + " games");
+                        }
+                    }
+                    return positions;
+                }));
+            }
+            long positions = 0;
+            for (Future<Long> worker : workers) {
+                positions += worker.get();
+            }
+            out.printf("%d games, %d positions in %.1f s%n", games, positions,
+                    (System.nanoTime() - start) / 1e9);
+            return positions;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException("Self-play failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // playGame plays one self-play game and returns its positions as records
+    private static ByteBuffer playGame(Search search, int depth) {
+        Othello game = new Othello();
+        long[] black = new long[64];
+        long[] white = new long[64];
+        int plies = 0;
+        while (!game.getGameStatus()) {
+            Position position = game.toPosition();
+            black[plies] = position.getBlack();
+            white[plies] = position.getWhite();
+            int move;
+            if (plies < RANDOM_MOVES) {
+                long moves = game.getLegalMoves();
+                for (int skip = ThreadLocalRandom.current().nextInt(Long.bitCount(moves));
+                     skip > 0; skip--) {
+                    moves &= moves - 1;
+                }
+                move = Long.numberOfTrailingZeros(moves);
+            } else {
+                move = search.iterate(position, Long.MAX_VALUE, depth).getMove();
+            }
+            game.playTurn(move & 7, move >>> 3);
+            plies++;
+        }
+        byte result = (byte) (game.getPieceCount(1) - game.getPieceCount(2));
+        ByteBuffer records = ByteBuffer.allocate(plies * RECORD_BYTES);
+        for (int i = 0; i < plies; i++) {
+            records.putLong(black[i]).putLong(white[i]).put(result);
+        }
+        return records.flip();
+    }
+
+    // append writes one game's records in one piece, so games never interleave
+    private static void append(FileChannel channel, ByteBuffer records) throws IOException {
+        synchronized (channel) {
+            while (records.hasRemaining()) {
+                channel.write(records);
+            }
+        }
+    }
+
+    /**
+     * fit fits new weights to a data file: every epoch is one pass over the
+     * file in mini-batches, and the root mean square error (in discs) of
+     * each epoch is reported.
+     *
+     * @param data data file written by generate
+     * @param phases number of game phases to give separate weights
+     * @param epochs number of passes over the data
+     */
+    public PatternEvaluator fit(Path data, int phases, int epochs) throws IOException {
+        if (phases < 1 || epochs < 1) {
+            throw new IllegalArgumentException("Bad phases or epochs");
+        }
+        int patterns = PatternEvaluator.TABLE_SIZES.length;
+        int[] offsets = new int[patterns + 1];
+        for (int p = 0; p < patterns; p++) {
+            offsets[p + 1] = offsets[p] + PatternEvaluator.TABLE_SIZES[p];
+        }
+        int perPhase = offsets[patterns];
+        // the weights and the gradient are indexed by phase * perPhase + entry
+        float[] weights = new float[phases * perPhase];
+        float[] gradient = new float[weights.length];
+        int[] counts = new int[weights.length];
+        int instances = PatternEvaluator.INSTANCE_PATTERN.length;
+        int[] touched = new int[BATCH * instances];
+        int[] indices = new int[instances];
+        int[] entries = new int[instances];
+
+        ByteBuffer batch = ByteBuffer.allocate(BATCH * RECORD_BYTES);
+        for (int epoch = 1; epoch <= epochs; epoch++) {
+            long start = System.nanoTime();
+            double squaredError = 0;
+            long positions = 0;
+            try (FileChannel channel = FileChannel.open(data, StandardOpenOption.READ)) {
+                while (readBatch(channel, batch)) {
+                    int touchedCount = 0;
+                    while (batch.remaining() >= RECORD_BYTES) {
+                        long black = batch.getLong();
+                        long white = batch.getLong();
+                        int target = batch.get() * DISC_VALUE;
+                        PatternEvaluator.indices(black, white, indices);
+                        int base = PatternEvaluator.phase(Long.bitCount(black | white), phases)
+                                * perPhase;
+                        float predicted = 0;
+                        for (int i = 0; i < instances; i++) {
+                            entries[i] = base + offsets[PatternEvaluator.INSTANCE_PATTERN[i]]
+                                    + indices[i];
+                            predicted += weights[entries[i]];
+                        }
+                        float error = target - predicted;
+                        squaredError += (double) error * error;
+                        positions++;
+                        for (int entry : entries) {
+                            if (counts[entry]++ == 0) {
+                                touched[touchedCount++] = entry;
+                            }
+                            gradient[entry] += error;
+                        }
+                    }
+                    /* Step every weight the batch used by its mean error. The
+                    mean (rather than the sum) keeps common entries such as an
+                    empty edge from taking huge steps, while rare ones still
+                    learn from the few positions they appear in.
+                     */
+                    for (int t = 0; t < touchedCount; t++) {
+                        int entry = touched[t];
+                        weights[entry] += RATE * gradient[entry] / counts[entry];
+                        gradient[entry] = 0;
+                        counts[entry] = 0;
+                    }
+                }
+            }
+            if (positions == 0) {
+                throw new IOException("No positions in " + data);
+            }
+            out.printf("epoch %d: %d positions, error %.2f discs, %.1f s%n", epoch, positions,
+                    Math.sqrt(squaredError / positions) / DISC_VALUE,
+                    (System.nanoTime() - start) / 1e9);
+        }
+
+        short[][][] tables = new short[phases][patterns][];
+        for (int phase = 0; phase < phases; phase++) {
+            for (int p = 0; p < patterns; p++) {
+                short[] table = new short[PatternEvaluator.TABLE_SIZES[p]];
+                int base = phase * perPhase + offsets[p];
+                for (int i = 0; i < table.length; i++) {
+                    float weight = Math.max(Short.MIN_VALUE,
+                            Math.min(Short.MAX_VALUE, weights[base + i]));
+                    table[i] = (short) Math.round(weight);
+                }
+                tables[phase][p] = table;
+            }
+        }
+        return new PatternEvaluator(tables);
+    }
+
+    // readBatch fills the buffer from the channel; false once the file is done
+    private static boolean readBatch(FileChannel channel, ByteBuffer batch) throws IOException {
+        batch.clear();
+        while (batch.hasRemaining()) {
+            if (channel.read(batch) < 0) {
+                break;
+            }
+        }
+        batch.flip();
+        return batch.remaining() >= RECORD_BYTES;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) {
+            System.err.println("Usage: PatternTrainer generate data-file games [depth] [threads]");
+            System.err.println("       PatternTrainer fit data-file [epochs] [phases] "
+                    + "[weights-file]");
+            System.exit(2);
+        }
+        PatternTrainer trainer = new PatternTrainer(System.out);
+        Path data = Paths.get(args[1]);
+        if (args[0].equals("generate") && args.length > 2) {
+            int games = Integer.parseInt(args[2]);
+            int depth = args.length > 3 ? Integer.parseInt(args[3]) : 4;
+            int threads = args.length > 4 ? Integer.parseInt(args[4])
+                    : Runtime.getRuntime().availableProcessors();
+            trainer.generate(data, games, depth, threads, PatternEvaluator.loadDefault());
+        } else if (args[0].equals("fit")) {
+            int epochs = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+            int phases = args.length > 3 ? Integer.parseInt(args[3]) : 6;
+            Path weights = Paths.get(args.length > 4 ? args[4] : PatternEvaluator.DEFAULT_FILE);
+            trainer.fit(data, phases, epochs).write(weights);
+            System.out.println("Weights written to " + weights);
+        } else {
+            System.err.println("Unknown command: " + args[0]);
+            System.exit(2);
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package org.cis1200.othello;
+
+/**
+ * Perft counts the leaf nodes of the game tree to a fixed depth from the
+ * starting position. The counts are known for Othello, so comparing
+ * against them checks that move generation (including passes) is exactly
+ * right, and the time it takes measures how fast move generation is.
+ *
+ * Conventions (the usual ones for Othello perft):
+ * 1. A pass counts as a ply
+ * 2. A finished game counts as one leaf, even above the target depth
+ *
+ * Run this file to verify the reference counts and print nodes/sec for
+ * each way of walking the tree:
+ * java org.cis1200.othello.Perft [depth]
+ */
+public final class Perft {
+
+    /**
+     * Leaf counts from the starting position, REFERENCE[d] for depth d.
+     */
+    static final long[] REFERENCE = {
+        1L, 4L, 12L, 56L, 244L, 1396L, 8200L, 55092L, 390216L, 3005288L,
+        24571284L, 212258800L, 1939886636L, 18429641748L
+    };
+
+    private Perft() {
+    }
+
+    /**
+     * perft counts the leaves below a Position, creating one child
+     * Position per move.
+     */
+    public static long perft(Position position, int depth) {
+        if (depth == 0) {
+            return 1;
+        }
+        long moves = position.legalMoves();
+        if (moves == 0) {
+            if (position.isGameOver()) {
+                return 1;
+            }
+            return perft(position.pass(), depth - 1);
+        }
+        if (depth == 1) {
+            return Long.bitCount(moves);
+        }
+        long nodes = 0;
+        while (moves != 0) {
+            nodes += perft(position.play(Long.numberOfTrailingZeros(moves)), depth - 1);
+            moves &= moves - 1;
+        }
+        return nodes;
+    }
+
+    /**
+     * perft on raw bitboards: the fastest form, with no objects at all.
+     *
+     * @param own discs of the player to move
+     * @param opp discs of the opponent
+     */
+    public static long perft(long own, long opp, int depth) {
+        return perft(own, opp, depth, false);
+    }
+
+    private static long perft(long own, long opp, int depth, boolean passed) {
+        if (depth == 0) {
+            return 1;
+        }
+        long moves = Bitboard.legalMoves(own, opp);
+        if (moves == 0) {
+            // two passes in a row: the game is over
+            return passed ? 1 : perft(opp, own, depth - 1, true);
+        }
+        if (depth == 1) {
+            return Long.bitCount(moves);
+        }
+        long nodes = 0;
+        while (moves != 0) {
+            int sq = Long.numberOfTrailingZeros(moves);
+            long flipped = Bitboard.flips(sq, own, opp);
+            nodes += perft(opp & ~flipped, own | flipped | (1L << sq), depth - 1, false);
+            moves &= moves - 1;
+        }
+        return nodes;
+    }
+
+    /**
+     * perft through the public Othello API: isValid on every cell,
+     * playTurn to make a move and undo to take it back. This is what code
+     * built on the model pays per node.
+     */
+    public static long perft(Othello game, int depth) {
+        if (depth == 0 || game.getGameStatus()) {
+            return 1;
+        }
+        int player = game.getCurrentPlayer() ? 1 : 2;
+        long nodes = 0;
+        for (int r = 0; r < 8; r++) {
+            for (int c = 0; c < 8; c++) {
+                if (!game.isValid(c, r, player)) {
+                    continue;
+                }
+                game.playTurn(c, r);
+                // Othello passes automatically; the pass is still a ply
+                boolean passed = !game.getGameStatus()
+                        && game.getCurrentPlayer() == (player == 1);
+                if (passed) {
+                    nodes += depth == 1 ? 1 : perft(game, depth - 2);
+                } else {
+                    nodes += perft(game, depth - 1);
+                }
+                game.undo();
+            }
+        }
+        return nodes;
+    }
+
+    /**
+     * Verifies the reference counts up to the given depth (default 9) and
+     * prints nodes/sec for the Othello API, Position and raw bitboards,
+     * plus the bytes allocated per playTurn.
+     */
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 9;
+        if (depth >= REFERENCE.length) {
+            throw new IllegalArgumentException("No reference count beyond depth "
+                    + (REFERENCE.length - 1));
+        }
+
+        boolean ok = true;
+        for (int d = 1; d <= depth; d++) {
+            long nodes = perft(Bitboard.START_BLACK, Bitboard.START_WHITE, d);
+            boolean match = nodes == REFERENCE[d];
+            ok &= match;
+            System.out.println("perft(" + d + ") = " + nodes + (match ? "" : "  MISMATCH, expected "
+                    + REFERENCE[d]));
+        }
+        ok &= perft(Position.start(), depth) == REFERENCE[depth];
+        ok &= perft(new Othello(), Math.min(depth, 8)) == REFERENCE[Math.min(depth, 8)];
+        System.out.println(ok ? "All reference counts match" : "REFERENCE COUNT MISMATCH");
+
+        // warm up, then time each engine on the same tree
+        for (int i = 0; i < 3; i++) {
+            benchmark("Othello API", depth - 1, false);
+            benchmark("Position", depth - 1, false);
+            benchmark("bitboards", depth - 1, false);
+        }
+        benchmark("Othello API", depth, true);
+        benchmark("Position", depth, true);
+        benchmark("bitboards", depth, true);
+
+        System.out.println("bytes allocated per playTurn: " + allocationPerPlayTurn());
+        if (!ok) {
+            System.exit(1);
+        }
+    }
+
+    private static void benchmark(String engine, int depth, boolean print) {
+        long start = System.nanoTime();
+        long nodes;
+        if (engine.equals("Othello API")) {
+            nodes = perft(new Othello(), depth);
+        } else if (engine.equals("Position")) {
+            nodes = perft(Position.start(), depth);
+        } else {
+            nodes = perft(Bitboard.START_BLACK, Bitboard.START_WHITE, depth);
+        }
+        long elapsed = Math.max(1, System.nanoTime() - start);
+        if (print) {
+            System.out.printf("%-12s depth %d: %,d nodes in %d ms, %,.0f nodes/sec%n",
+                    engine, depth, nodes, elapsed / 1_000_000, nodes * 1e9 / elapsed);
+        }
+    }
+
+    /**
+     * Plays many games through playTurn and reports the average number of
+     * bytes the current thread allocated per call (after a warm-up pass so
+     * the JIT has compiled the move path). Returns -1 if the JVM cannot
+     * measure allocation.
+     */
+    static double allocationPerPlayTurn() {
+        java.lang.management.ThreadMXBean bean =
+                java.lang.management.ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        long thread = Thread.currentThread().getId();
+        Othello game = new Othello();
+        double perCall = -1;
+        for (int pass = 0; pass < 2; pass++) {
+            long turns = 0;
+            long before = threads.getThreadAllocatedBytes(thread);
+            for (int g = 0; g < 100_000; g++) {
+                game.reset();
+                // always take the lowest valid move until the game ends
+                while (!game.getGameStatus()) {
+                    int sq = Long.numberOfTrailingZeros(game.getLegalMoves());
+                    game.playTurn(sq & 7, sq >>> 3);
+                    turns++;
+                }
+            }
+            perCall = (double) (threads.getThreadAllocatedBytes(thread) - before) / turns;
+        }
+        return perCall;
+    }
+}
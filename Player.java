@@ -0,0 +1,24 @@
+package org.cis1200.othello;
+
+/**
+ * Player is anything that can choose moves in an Othello game: the
+ * computer players, or simple baselines to measure them against.
+ *
+ * Players that search on threads of their own stop them in close; a
+ * player must not be used once it has been closed.
+ */
+public interface Player extends AutoCloseable {
+
+    /**
+     * chooseMove returns the square (bit index r * 8 + c) to play in the
+     * given position, or SearchResult.PASS if there is no valid move.
+     */
+    int chooseMove(Position position);
+
+    /**
+     * close releases the player's threads, if it has any.
+     */
+    @Override
+    default void close() {
+    }
+}
@@ -0,0 +1,255 @@
+package org.cis1200.othello;
+
+/**
+ * Position is an immutable snapshot of an Othello game: the discs of both
+ * players (as two bitboards, see Bitboard) and whose turn it is.
+ *
+ * Unlike Othello, a Position never changes after it has been created.
+ * Playing a move returns a new child position instead, so positions can
+ * be shared freely between threads without locks or defensive copies.
+ *
+ * Passes are explicit here: if the player to move has no valid move but
+ * the opponent does (mustPass), the only child is pass(). Othello hands
+ * the turn over automatically instead.
+ */
+public final class Position {
+
+    private final long black;
+    private final long white;
+    private final boolean player1;
+
+    /**
+     * Creates a position from two bitboards.
+     *
+     * @param black discs of Player 1
+     * @param white discs of Player 2
+     * @param player1 true if it is Player 1's turn
+     */
+    public Position(long black, long white, boolean player1) {
+        if ((black & white) != 0) {
+            throw new IllegalArgumentException("A cell cannot hold two pieces");
+        }
+        this.black = black;
+        this.white = white;
+        this.player1 = player1;
+    }
+
+    /**
+     * start returns the standard starting position, the same one
+     * Othello.reset() sets up.
+     */
+    public static Position start() {
+        return new Position(Bitboard.START_BLACK, Bitboard.START_WHITE, true);
+    }
+
+    public long getBlack() {
+        return black;
+    }
+
+    public long getWhite() {
+        return white;
+    }
+
+    /**
+     * @return true if it's Player 1's turn, false if it's Player 2's turn.
+     */
+    public boolean getCurrentPlayer() {
+        return player1;
+    }
+
+    // discs of the player to move and of the opponent
+    private long own() {
+        return player1 ? black : white;
+    }
+
+    private long opp() {
+        return player1 ? white : black;
+    }
+
+    /**
+     * getCell returns 0 = empty, 1 = Player 1, 2 = Player 2 for the cell at
+     * column c, row r.
+     */
+    public int getCell(int c, int r) {
+        long bit = Bitboard.square(c, r);
+        if ((black & bit) != 0) {
+            return 1;
+        } else if ((white & bit) != 0) {
+            return 2;
+        }
+        return 0;
+    }
+
+    /**
+     * getPieceCount returns the number of pieces player (1 or 2) has.
+     */
+    public int getPieceCount(int player) {
+        return Long.bitCount(player == 1 ? black : white);
+    }
+
+    /**
+     * legalMoves returns the valid moves of the player to move as a
+     * bitboard.
+     */
+    public long legalMoves() {
+        return Bitboard.legalMoves(own(), opp());
+    }
+
+    /**
+     * isValid checks if the player to move may play on square sq
+     * (bit index r * 8 + c).
+     */
+    public boolean isValid(int sq) {
+        return sq >= 0 && sq < 64 && Bitboard.flips(sq, own(), opp()) != 0;
+    }
+
+    /**
+     * play returns the position after the player to move plays on square
+     * sq. The turn always goes to the opponent, even if they will have to
+     * pass.
+     *
+     * @throws IllegalArgumentException if the move is not valid
+     */
+    public Position play(int sq) {
+        long flipped = sq >= 0 && sq < 64 ? Bitboard.flips(sq, own(), opp()) : 0;
+        if (flipped == 0) {
+            throw new IllegalArgumentException("Invalid move: " + sq);
+        }
+        long placed = 1L << sq;
+        if (player1) {
+            return new Position(black | placed | flipped, white & ~flipped, false);
+        } else {
+            return new Position(black & ~flipped, white | placed | flipped, true);
+        }
+    }
+
+    /**
+     * pass returns the same discs with the turn handed to the opponent.
+     */
+    public Position pass() {
+        return new Position(black, white, !player1);
+    }
+
+    /**
+     * mustPass checks if the player to move has no valid move while the
+     * opponent still has one.
+     */
+    public boolean mustPass() {
+        return legalMoves() == 0 && Bitboard.legalMoves(opp(), own()) != 0;
+    }
+
+    /**
+     * isGameOver checks if neither player can move.
+     */
+    public boolean isGameOver() {
+        return legalMoves() == 0 && Bitboard.legalMoves(opp(), own()) == 0;
+    }
+
+    /**
+     * children returns every position reachable in one ply: one per valid
+     * move (in square order), a single pass if the player must pass, and
+     * none once the game is over.
+     */
+    public Position[] children() {
+        long moves = legalMoves();
+        if (moves == 0) {
+            return isGameOver() ? new Position[0] : new Position[] {pass()};
+        }
+        Position[] children = new Position[Long.bitCount(moves)];
+        for (int i = 0; moves != 0; i++) {
+            children[i] = play(Long.numberOfTrailingZeros(moves));
+            moves &= moves - 1;
+        }
+        return children;
+    }
+
+    /**
+     * winner uses the same encoding as Othello.checkWinner.
+     *
+     * @return 0 if the game is not over, 1 if player 1 has won, 2 if player 2
+     *         has won, 3 if it is a tie
+     */
+    public int winner() {
+        if (!isGameOver()) {
+            return 0;
+        }
+        int diff = Long.bitCount(black) - Long.bitCount(white);
+        if (diff > 0) {
+            return 1;
+        } else if (diff < 0) {
+            return 2;
+        }
+        return 3;
+    }
+
+    /**
+     * hash returns the Zobrist hash of the position (see Zobrist), the
+     * same value Othello.getHash gives for it.
+     */
+    public long hash() {
+        return Zobrist.hash(black, white, player1);
+    }
+
+    /**
+     * transform returns the position turned or reflected by one of the 8
+     * symmetries of the board (see Symmetry), with the same player to move.
+     */
+    public Position transform(int t) {
+        return new Position(Symmetry.transform(black, t), Symmetry.transform(white, t), player1);
+    }
+
+    /**
+     * canonicalTransforms returns the transforms that map this position
+     * to its canonical form, as a bit mask (see Symmetry).
+     */
+    public int canonicalTransforms() {
+        return Symmetry.canonicalTransforms(black, white);
+    }
+
+    /**
+     * canonicalHash returns a hash that is the same for all 8 images of the
+     * position under the board's symmetries: the hash of its canonical
+     * form. Books and databases key on it and store moves as they are in
+     * the canonical form (see Symmetry.canonicalMove).
+     */
+    public long canonicalHash() {
+        return Symmetry.canonicalHash(black, white, player1);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Position)) {
+            return false;
+        }
+        Position other = (Position) o;
+        return black == other.black && white == other.white && player1 == other.player1;
+    }
+
+    @Override
+    public int hashCode() {
+        long h = black * 0x9E3779B97F4A7C15L + white;
+        h = h * 0x9E3779B97F4A7C15L + (player1 ? 1 : 0);
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * toString prints the board as 8 rows of X (Player 1), O (Player 2) and
+     * - (empty), followed by the player to move.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(80);
+        for (int r = 0; r < 8; r++) {
+            for (int c = 0; c < 8; c++) {
+                int cell = getCell(c, r);
+                sb.append(cell == 1 ? 'X' : cell == 2 ? 'O' : '-');
+            }
+            sb.append('\n');
+        }
+        sb.append(player1 ? "X to move" : "O to move");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,24 @@
+package org.cis1200.othello;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * RandomPlayer plays a uniformly random valid move. It is the weakest
+ * possible baseline, and can be used from several threads at once.
+ */
+public class RandomPlayer implements Player {
+
+    @Override
+    public int chooseMove(Position position) {
+        long moves = position.legalMoves();
+        if (moves == 0) {
+            return SearchResult.PASS;
+        }
+        // drop a random number of moves from the bottom of the mask
+        int skip = ThreadLocalRandom.current().nextInt(Long.bitCount(moves));
+        for (; skip > 0; skip--) {
+            moves &= moves - 1;
+        }
+        return Long.numberOfTrailingZeros(moves);
+    }
+}
@@ -4,8 +4,17 @@ import javax.swing.*;
 import java.awt.*;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 public class RunOthello implements Runnable {
+
+    /**
+     * Opening book loaded at start-up if it exists (see OpeningBookBuilder).
+     */
+    public static final String BOOK_FILE = "othello.book";
+
     public void run() {
 
         // Top-level frame containing all components
@@ -44,6 +53,14 @@ public class RunOthello implements Runnable {
         reset.addActionListener(e -> board.reset());
         control_panel.add(reset);
 
+        // Undo and redo buttons (also Ctrl-Z and Ctrl-Y)
+        final JButton undo = new JButton("Undo");
+        undo.addActionListener(e -> board.undo());
+        control_panel.add(undo);
+        final JButton redo = new JButton("Redo");
+        redo.addActionListener(e -> board.redo());
+        control_panel.add(redo);
+
         // Instructions button
         final JButton instructions = new JButton("Instructions");
         instructions.addActionListener(e -> {
@@ -71,10 +88,54 @@ public class RunOthello implements Runnable {
         });
         control_panel.add(instructions);
 
+        // Opening book, shared by the hints and the computer player
+        final OpeningBook book = loadBook(Paths.get(BOOK_FILE));
+        board.setOpeningBook(book);
+
+        // Trained evaluation weights for the computer player, if there are any
+        final PatternEvaluator weights = loadWeights(Paths.get(PatternEvaluator.DEFAULT_FILE));
+
+        // Computer opponent option: the computer plays Gray when checked
+        final JCheckBox computer = new JCheckBox("Computer plays Gray");
+        computer.addActionListener(e -> {
+            ComputerPlayer player = null;
+            if (computer.isSelected()) {
+                player = new ComputerPlayer();
+                player.setOpeningBook(book);
+                player.setEvaluator(weights);
+            }
+            board.setComputerPlayer(2, player);
+        });
+        control_panel.add(computer);
+
+        // Hints option: show valid moves and book moves on the board
+        final JCheckBox hints = new JCheckBox("Hints");
+        hints.addActionListener(e -> board.setShowHints(hints.isSelected()));
+        control_panel.add(hints);
+
+        // Analysis option: score every valid move in the background
+        final JCheckBox analysis = new JCheckBox("Analysis");
+        analysis.addActionListener(e -> board.setShowAnalysis(analysis.isSelected()));
+        control_panel.add(analysis);
+
+        // Animation option: discs turn over instead of changing at once
+        final JCheckBox animate = new JCheckBox("Animate");
+        animate.addActionListener(e -> board.setAnimateFlips(animate.isSelected()));
+        control_panel.add(animate);
+
+        // Board size option: starts a new game on a board of that size
+        final JComboBox<String> boardSize =
+                new JComboBox<>(new String[] {"6x6", "8x8", "10x10", "16x16"});
+        boardSize.setSelectedItem("8x8");
+        boardSize.addActionListener(e -> {
+            String selected = (String) boardSize.getSelectedItem();
+            board.setBoardSize(Integer.parseInt(selected.substring(0, selected.indexOf('x'))));
+        });
+        control_panel.add(boardSize);
+
         // Game panel
         final JPanel game_state_panel = new JPanel();
         frame.add(game_state_panel, BorderLayout.WEST);
-        Othello game = new Othello();
 
         // Save option
         final JButton save = new JButton("Save");
@@ -93,7 +154,7 @@ public class RunOthello implements Runnable {
                 // Get selected file returns the selected file
                 File fileToSave = fileChooser.getSelectedFile();
                 try {
-                    game.saveGame(fileToSave.getAbsolutePath());
+                    board.saveGame(fileToSave.getAbsolutePath());
                     JOptionPane.showMessageDialog(frame,
                             "Game saved successfully!",
                             "Save Successful",
@@ -119,9 +180,8 @@ public class RunOthello implements Runnable {
             if (userSelection == JFileChooser.APPROVE_OPTION) {
                 File fileToLoad = fileChooser.getSelectedFile();
                 try {
-                    game.loadGame(fileToLoad.getAbsolutePath());
-                    // Update the board to reflect loaded game state
-                    game.updateBoard(game.getBoard());
+                    // Loads into the board, which redraws itself
+                    board.loadGame(fileToLoad.getAbsolutePath());
                     JOptionPane.showMessageDialog(frame,
                             "Game loaded successfully!",
                             "Load Successful",
@@ -144,4 +204,32 @@ public class RunOthello implements Runnable {
         // Start the game
         board.reset();
     }
-}
\ No newline at end of file
+
+    /* loadBook opens the opening book if there is one. The game works
+    without it, so a missing or broken book is only reported.
+     */
+    private static OpeningBook loadBook(Path file) {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try {
+            return OpeningBook.open(file);
+        } catch (IOException e) {
+            System.err.println("Could not load opening book: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // loadWeights is like loadBook: without weights the built-in evaluation is used
+    private static PatternEvaluator loadWeights(Path file) {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try {
+            return PatternEvaluator.load(file);
+        } catch (IOException e) {
+            System.err.println("Could not load evaluation weights: " + e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,463 @@
+package org.cis1200.othello;
+
+import jdk.jfr.FlightRecorder;
+
+/**
+ * Search is the game-tree search behind ComputerPlayer: negamax with
+ * alpha-beta pruning, run with iterative deepening (depth 1, 2, 3, ...)
+ * until the time budget runs out.
+ *
+ * The search works directly on bitboards (own = discs of the player to
+ * move, opp = discs of the opponent), so making a move is a couple of
+ * xors and nothing is allocated per node.
+ *
+ * Positions at the search horizon are scored by the built-in evaluate,
+ * or by a PatternEvaluator if one is set; its indices are then kept up to
+ * date move by move along the search path.
+ *
+ * A Search keeps per-search state (node count, deadline) and is not
+ * thread-safe: use one instance per thread. Several instances may share
+ * one TranspositionTable, which is how ParallelSearch uses them.
+ */
+public final class Search {
+
+    /**
+     * Scores at or beyond WIN (or -WIN) are finished games. The disc
+     * difference is added on top, so bigger wins still score higher.
+     */
+    public static final int WIN = 1_000_000;
+
+    private static final int INFINITY = 2 * WIN;
+
+    // check the clock once every this many nodes (must be a power of 2 minus 1)
+    private static final int CLOCK_MASK = 1023;
+
+    private static final long CORNERS = 0x8100000000000081L;
+    // the squares diagonally next to a corner
+    private static final long X_SQUARES = 0x0042000000004200L;
+    // the edge squares directly next to a corner
+    private static final long C_SQUARES = 0x4281000000008142L;
+    private static final long EDGES = 0xFF818181818181FFL & ~CORNERS & ~C_SQUARES;
+
+    /* Squares in the order moves are tried when nothing better is known:
+    corners first, X-squares (which usually give a corner away) last
+     */
+    private static final long[] ORDER = {
+        CORNERS, EDGES, ~(CORNERS | EDGES | X_SQUARES | C_SQUARES), C_SQUARES, X_SQUARES
+    };
+    private static final int[] WEIGHTS = {100, 10, 1, -20, -50};
+
+    private static final int MOBILITY_WEIGHT = 5;
+
+    private final TranspositionTable table;
+
+    private long nodes;
+    // for EngineStats: moves generated, table probes and hits
+    private long generated;
+    private long probes;
+    private long hits;
+    private long deadline;
+    private boolean checkClock;
+    private boolean aborted;
+    // set from another thread to end the search early (see stop)
+    private volatile boolean stopRequested;
+
+    // first depth of iterative deepening; helpers of a parallel search skip ahead
+    private int startDepth = 1;
+    private boolean helper;
+    // false when a ParallelSearch starts the new search on the table itself
+    private boolean agesTable = true;
+
+    // best move found by the last call to searchRoot
+    private int rootBest;
+
+    // pattern evaluation (null for the built-in one), tracking the search path
+    private PatternEvaluator evaluator;
+    private PatternEvaluator.Tracker tracker;
+
+    /**
+     * Creates a search that stores and reuses results in the given
+     * transposition table (may be null to search without one).
+     */
+    public Search(TranspositionTable table) {
+        this.table = table;
+    }
+
+    public Search() {
+        this(null);
+    }
+
+    /* helper turns this search into a helper thread of a ParallelSearch:
+    it starts deeper to spread the threads over different depths, and
+    leaves the table's search counter to the main thread.
+     */
+    void helper(int firstDepth) {
+        startDepth = firstDepth;
+        helper = true;
+        agesTable = false;
+    }
+
+    /* keepTableAge makes the search leave the table's search counter alone,
+    for the main thread of a ParallelSearch, which bumps it before any
+    thread starts. Otherwise it searches as usual.
+     */
+    void keepTableAge() {
+        agesTable = false;
+    }
+
+    /**
+     * setEvaluator makes the search score positions with the given
+     * pattern weights (null for the built-in evaluation).
+     */
+    public void setEvaluator(PatternEvaluator evaluator) {
+        this.evaluator = evaluator;
+    }
+
+    /**
+     * stop asks a running search (on another thread) to finish as soon
+     * as possible. The result is still that of the last completed depth.
+     */
+    public void stop() {
+        stopRequested = true;
+    }
+
+    /**
+     * iterate searches the position with increasing depth until the time
+     * budget is used up or maxDepth has been searched. The result is
+     * always the best move of the last depth that was searched completely;
+     * depth 1 is always completed, whatever the budget.
+     *
+     * @param position position to search from
+     * @param budgetMillis time budget in milliseconds
+     * @param maxDepth deepest depth to search
+     * @return the best move, or a PASS result if there is no move to make
+     */
+    public SearchResult iterate(Position position, long budgetMillis, int maxDepth) {
+        long start = System.nanoTime();
+        // cap the budget so the deadline cannot overflow
+        deadline = start + Math.min(budgetMillis, Long.MAX_VALUE / 4_000_000L) * 1_000_000L;
+        nodes = 0;
+        generated = 0;
+        probes = 0;
+        hits = 0;
+        aborted = false;
+        checkClock = helper;
+        if (table != null && agesTable) {
+            table.newSearch();
+        }
+
+        boolean black = position.getCurrentPlayer();
+        long own = black ? position.getBlack() : position.getWhite();
+        long opp = black ? position.getWhite() : position.getBlack();
+        long hash = position.hash();
+        long moves = Bitboard.legalMoves(own, opp);
+        if (moves == 0) {
+            return new SearchResult(SearchResult.PASS, 0, 0, 0, 0);
+        }
+        startTracking(position);
+
+        int bestMove = Long.numberOfTrailingZeros(moves);
+        int bestScore = 0;
+        int completed = 0;
+        int empties = Long.bitCount(~(own | opp));
+        for (int depth = startDepth; depth <= maxDepth; depth++) {
+            SearchIterationEvent event = beginIteration();
+            int score = searchRoot(own, opp, hash, black, moves, depth, bestMove);
+            endIteration(event, depth, score);
+            if (aborted) {
+                break;
+            }
+            bestMove = rootBest;
+            bestScore = score;
+            completed = depth;
+            // from here on the budget applies
+            checkClock = true;
+            // searching past the end of the game cannot change anything
+            if (depth >= empties || stopRequested || System.nanoTime() >= deadline) {
+                break;
+            }
+        }
+        if (EngineStats.ENABLED) {
+            EngineStats.searched(nodes, generated, probes, hits);
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000L;
+        return new SearchResult(bestMove, bestScore, completed, nodes, millis);
+    }
+
+    /* beginIteration starts the Flight Recorder event for one depth (null
+    when statistics are off, or while Flight Recorder has never been
+    started: creating the first event loads much of Flight Recorder, which
+    would add a third of a second to the first search of every process).
+    The event holds the counts so far until endIteration turns them into
+    the counts for this depth.
+     */
+    private SearchIterationEvent beginIteration() {
+        if (!EngineStats.ENABLED || !FlightRecorder.isInitialized()) {
+            return null;
+        }
+        SearchIterationEvent event = new SearchIterationEvent();
+        event.begin();
+        event.nodes = nodes;
+        event.tableProbes = probes;
+        event.tableHits = hits;
+        return event;
+    }
+
+    private void endIteration(SearchIterationEvent event, int depth, int score) {
+        if (event == null || !event.isEnabled()) {
+            return;
+        }
+        event.end();
+        event.depth = depth;
+        event.completed = !aborted;
+        event.bestMove = Bitboard.squareName(rootBest);
+        event.score = score;
+        event.nodes = nodes - event.nodes;
+        event.tableProbes = probes - event.tableProbes;
+        event.tableHits = hits - event.tableHits;
+        event.helper = helper;
+        event.commit();
+    }
+
+    /**
+     * scoreMoves gives every legal move of the position its own score,
+     * searched to the given depth with a full window (so the scores of
+     * moves that are not best are exact too, unlike in iterate). There is
+     * no time budget: the search runs until done or until stop is called.
+     *
+     * @return scores indexed by square, from the point of view of the
+     *         player to move (only legal moves have one), or null if the
+     *         search was stopped
+     */
+    public int[] scoreMoves(Position position, int depth) {
+        deadline = Long.MAX_VALUE;
+        nodes = 0;
+        generated = 0;
+        probes = 0;
+        hits = 0;
+        aborted = false;
+        checkClock = true;
+
+        boolean black = position.getCurrentPlayer();
+        long own = black ? position.getBlack() : position.getWhite();
+        long opp = black ? position.getWhite() : position.getBlack();
+        long hash = position.hash();
+        startTracking(position);
+        int[] scores = new int[64];
+        for (long moves = Bitboard.legalMoves(own, opp); moves != 0; moves &= moves - 1) {
+            if (stopRequested) {
+                return null;
+            }
+            int sq = Long.numberOfTrailingZeros(moves);
+            scores[sq] = -playAndSearch(opp, own, hash, black, sq, depth, -INFINITY, INFINITY);
+            if (aborted) {
+                break;
+            }
+        }
+        if (EngineStats.ENABLED) {
+            EngineStats.searched(nodes, generated, probes, hits);
+        }
+        return aborted ? null : scores;
+    }
+
+    private void startTracking(Position position) {
+        tracker = evaluator == null ? null
+                : evaluator.track(position.getBlack(), position.getWhite());
+    }
+
+    /* searchRoot is negamax for the root: it tries the previous
+    iteration's best move first and remembers which move was best.
+     */
+    private int searchRoot(long own, long opp, long hash, boolean black,
+                           long moves, int depth, int firstMove) {
+        rootBest = firstMove;
+        int alpha = -playAndSearch(opp, own, hash, black, firstMove, depth, -INFINITY, INFINITY);
+        long rest = moves & ~(1L << firstMove);
+        for (long group : ORDER) {
+            long candidates = rest & group;
+            while (candidates != 0 && !aborted) {
+                int sq = Long.numberOfTrailingZeros(candidates);
+                candidates &= candidates - 1;
+                int score = -playAndSearch(opp, own, hash, black, sq, depth, -INFINITY, -alpha);
+                if (score > alpha) {
+                    alpha = score;
+                    rootBest = sq;
+                }
+            }
+        }
+        if (table != null && !aborted) {
+            table.store(hash, depth, TranspositionTable.EXACT, alpha, rootBest);
+        }
+        return alpha;
+    }
+
+    /* playAndSearch plays move sq for the player owning `mover`, which
+    hands the turn to the player owning `own`, and searches the result
+    from that player's point of view. hash is the hash before the move
+    and moverBlack tells whether the mover is Player 1.
+     */
+    private int playAndSearch(long own, long mover, long hash, boolean moverBlack,
+                              int sq, int depth, int alpha, int beta) {
+        long flipped = Bitboard.flips(sq, mover, own);
+        if (tracker != null) {
+            tracker.play(sq, flipped, moverBlack);
+        }
+        int score = negamax(own & ~flipped, mover | flipped | (1L << sq),
+                hash ^ Zobrist.move(moverBlack, sq, flipped), !moverBlack,
+                depth - 1, alpha, beta, false);
+        if (tracker != null) {
+            tracker.undo(sq, flipped, moverBlack);
+        }
+        return score;
+    }
+
+    /**
+     * negamax returns the score of the position for the player owning
+     * `own`, searched to the given depth, within the window alpha..beta.
+     * hash is the position's Zobrist hash and black tells whether `own`
+     * belongs to Player 1.
+     */
+    private int negamax(long own, long opp, long hash, boolean black,
+                        int depth, int alpha, int beta, boolean passed) {
+        nodes++;
+        if (checkClock && (nodes & CLOCK_MASK) == 0
+                && (stopRequested || System.nanoTime() >= deadline)) {
+            aborted = true;
+        }
+        if (aborted) {
+            return 0;
+        }
+
+        long moves = Bitboard.legalMoves(own, opp);
+        if (EngineStats.ENABLED) {
+            generated += Long.bitCount(moves);
+        }
+        if (moves == 0) {
+            if (passed) {
+                return finalScore(own, opp);
+            }
+            // pass: the opponent moves again at the same depth
+            return -negamax(opp, own, hash ^ Zobrist.SIDE, !black, depth, -beta, -alpha, true);
+        }
+        if (depth == 0) {
+            if (tracker != null) {
+                int score = tracker.evaluate();
+                return black ? score : -score;
+            }
+            return evaluate(own, opp, moves);
+        }
+
+        // a result stored for this position may settle it straight away
+        int ttMove = -1;
+        if (table != null) {
+            long entry = table.probe(hash);
+            if (EngineStats.ENABLED) {
+                probes++;
+                hits += entry != TranspositionTable.MISS ? 1 : 0;
+            }
+            if (entry != TranspositionTable.MISS) {
+                ttMove = TranspositionTable.move(entry);
+                if (TranspositionTable.depth(entry) >= depth) {
+                    int score = TranspositionTable.score(entry);
+                    int bound = TranspositionTable.bound(entry);
+                    if (bound == TranspositionTable.EXACT
+                            || (bound == TranspositionTable.LOWER && score >= beta)
+                            || (bound == TranspositionTable.UPPER && score <= alpha)) {
+                        return score;
+                    }
+                }
+            }
+        }
+
+        int alphaBefore = alpha;
+        int best = -INFINITY;
+        int bestMove = -1;
+        // the stored best move first, then the usual square order
+        if (ttMove >= 0 && (moves & (1L << ttMove)) != 0) {
+            best = -playAndSearch(opp, own, hash, black, ttMove, depth, -beta, -alpha);
+            bestMove = ttMove;
+            alpha = Math.max(alpha, best);
+            moves &= ~(1L << ttMove);
+        }
+        for (int i = 0; i < ORDER.length && alpha < beta; i++) {
+            long candidates = moves & ORDER[i];
+            while (candidates != 0) {
+                int sq = Long.numberOfTrailingZeros(candidates);
+                candidates &= candidates - 1;
+                int score = -playAndSearch(opp, own, hash, black, sq, depth, -beta, -alpha);
+                if (score > best) {
+                    best = score;
+                    bestMove = sq;
+                    if (score > alpha) {
+                        alpha = score;
+                        if (alpha >= beta) {
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+
+        if (table != null && !aborted) {
+            int bound = best <= alphaBefore ? TranspositionTable.UPPER
+                    : best >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+            table.store(hash, depth, bound, best, bestMove);
+        }
+        return best;
+    }
+
+    /**
+     * finalScore scores a finished game for the player owning `own`:
+     * beyond +-WIN for a win or loss, 0 for a tie.
+     */
+    static int finalScore(long own, long opp) {
+        return exactScore(Long.bitCount(own) - Long.bitCount(opp));
+    }
+
+    /**
+     * exactScore converts an exact final disc difference (as found by
+     * EndgameSolver) to the search's score scale.
+     */
+    public static int exactScore(int discDifference) {
+        if (discDifference > 0) {
+            return WIN + discDifference;
+        } else if (discDifference < 0) {
+            return -WIN + discDifference;
+        }
+        return 0;
+    }
+
+    /**
+     * evaluate is the static evaluation of an unfinished position for the
+     * player owning `own`: weighted squares (corners good, squares next
+     * to empty corners bad) plus the difference in mobility.
+     */
+    static int evaluate(long own, long opp, long ownMoves) {
+        int score = 0;
+        for (int i = 0; i < ORDER.length; i++) {
+            score += WEIGHTS[i] * (Long.bitCount(own & ORDER[i]) - Long.bitCount(opp & ORDER[i]));
+        }
+        long oppMoves = Bitboard.legalMoves(opp, own);
+        score += MOBILITY_WEIGHT * (Long.bitCount(ownMoves) - Long.bitCount(oppMoves));
+        return score;
+    }
+
+    /**
+     * squareWeight returns the value evaluate gives a disc on square sq.
+     */
+    static int squareWeight(int sq) {
+        for (int i = 0; i < ORDER.length; i++) {
+            if ((ORDER[i] & (1L << sq)) != 0) {
+                return WEIGHTS[i];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * getNodes returns the nodes visited by the last (or current) search.
+     */
+    public long getNodes() {
+        return nodes;
+    }
+}
@@ -0,0 +1,46 @@
+package org.cis1200.othello;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * SearchIterationEvent is a Flight Recorder event for one depth of a
+ * Search's iterative deepening. Its duration is the time that depth
+ * took. Record with -XX:StartFlightRecording and look for the Othello
+ * category.
+ */
+@Name("org.cis1200.othello.SearchIteration")
+@Label("Search Iteration")
+@Category("Othello")
+@Description("One depth of iterative deepening")
+public final class SearchIterationEvent extends Event {
+
+    @Label("Depth")
+    int depth;
+
+    @Label("Completed")
+    @Description("False if the time ran out before the depth was done")
+    boolean completed;
+
+    @Label("Best Move")
+    String bestMove;
+
+    @Label("Score")
+    int score;
+
+    @Label("Nodes")
+    long nodes;
+
+    @Label("Table Probes")
+    long tableProbes;
+
+    @Label("Table Hits")
+    long tableHits;
+
+    @Label("Helper")
+    @Description("True for the helper threads of a parallel search")
+    boolean helper;
+}
@@ -0,0 +1,74 @@
+package org.cis1200.othello;
+
+/**
+ * SearchResult is what a search reports back: the best move it found, its
+ * score and how much work it took. Instances are immutable.
+ */
+public final class SearchResult {
+
+    /**
+     * Move value used when the player to move has to pass (or the game is
+     * over), so there is no square to play.
+     */
+    public static final int PASS = -1;
+
+    private final int move;
+    private final int score;
+    private final int depth;
+    private final long nodes;
+    private final long millis;
+
+    /**
+     * @param move best square (bit index r * 8 + c) or PASS
+     * @param score score of the move from the mover's point of view
+     * @param depth deepest completed search depth
+     * @param nodes nodes visited over all depths
+     * @param millis wall time spent
+     */
+    public SearchResult(int move, int score, int depth, long nodes, long millis) {
+        this.move = move;
+        this.score = score;
+        this.depth = depth;
+        this.nodes = nodes;
+        this.millis = millis;
+    }
+
+    public int getMove() {
+        return move;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getMillis() {
+        return millis;
+    }
+
+    /**
+     * getColumn and getRow split the move into the coordinates playTurn
+     * takes.
+     */
+    public int getColumn() {
+        return move & 7;
+    }
+
+    public int getRow() {
+        return move >>> 3;
+    }
+
+    @Override
+    public String toString() {
+        String square = move == PASS ? "pass" : Bitboard.squareName(move);
+        return square + " score " + score + " depth " + depth + " nodes " + nodes
+                + " time " + millis + "ms";
+    }
+}
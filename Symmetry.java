@@ -0,0 +1,187 @@
+package org.cis1200.othello;
+
+/**
+ * Symmetry maps 8x8 bitboards through the 8 symmetries of the board (its
+ * rotations and reflections), so that positions which are the same up to
+ * symmetry can share one entry in a book, database or cache.
+ *
+ * A transform is a number from 0 to 7 whose bits say what it does, in
+ * this order:
+ * 1. bit 2: flip along the a1-h8 diagonal (swap columns and rows)
+ * 2. bit 1: flip the rows (row r becomes row 7 - r)
+ * 3. bit 0: flip the columns (column c becomes column 7 - c)
+ * so 0 is the identity and 3 turns the board half way round.
+ *
+ * The flips are done on the whole long at once with byte reversal and
+ * delta swaps (swapping the bits selected by a mask with the bits a fixed
+ * distance away), so a transform is a handful of shifts and masks.
+ *
+ * The canonical form of a position is the one of its 8 images with the
+ * smallest (Black, White) bitboards, compared as unsigned numbers.
+ * Several transforms give the canonical form when the position is itself
+ * symmetric; canonicalTransforms lists them all, so equivalent moves in
+ * such positions can be merged too.
+ *
+ * All methods are static and never allocate.
+ */
+public final class Symmetry {
+
+    /**
+     * Number of symmetries, and the transform that changes nothing.
+     */
+    public static final int COUNT = 8;
+    public static final int IDENTITY = 0;
+
+    private static final int FLIP_COLUMNS = 1;
+    private static final int FLIP_ROWS = 2;
+    private static final int FLIP_DIAGONAL = 4;
+
+    private Symmetry() {
+    }
+
+    /**
+     * transform returns the bitboard b after transform t.
+     */
+    public static long transform(long b, int t) {
+        if ((t & FLIP_DIAGONAL) != 0) {
+            b = flipDiagonal(b);
+        }
+        if ((t & FLIP_ROWS) != 0) {
+            b = Long.reverseBytes(b);
+        }
+        if ((t & FLIP_COLUMNS) != 0) {
+            b = flipColumns(b);
+        }
+        return b;
+    }
+
+    /**
+     * transformSquare returns where square sq (bit index r * 8 + c) goes
+     * under transform t.
+     */
+    public static int transformSquare(int sq, int t) {
+        int c = sq & 7;
+        int r = sq >>> 3;
+        if ((t & FLIP_DIAGONAL) != 0) {
+            int swap = c;
+            c = r;
+            r = swap;
+        }
+        if ((t & FLIP_ROWS) != 0) {
+            r = 7 - r;
+        }
+        if ((t & FLIP_COLUMNS) != 0) {
+            c = 7 - c;
+        }
+        return r * 8 + c;
+    }
+
+    /**
+     * inverse returns the transform that undoes t. Flips are their own
+     * inverse; with the diagonal flip, flipping the rows after it is the
+     * same as flipping the columns before it, so the two swap.
+     */
+    public static int inverse(int t) {
+        if ((t & FLIP_DIAGONAL) == 0) {
+            return t;
+        }
+        return FLIP_DIAGONAL | (t & FLIP_COLUMNS) << 1 | (t & FLIP_ROWS) >>> 1;
+    }
+
+    /**
+     * canonicalTransforms returns, as a bit mask over 0 - 7, every
+     * transform that maps the position to its canonical form. The lowest
+     * one is the usual choice (see canonicalTransform); there are more
+     * only when the position is symmetric.
+     */
+    public static int canonicalTransforms(long black, long white) {
+        long bestBlack = black;
+        long bestWhite = white;
+        int transforms = 1 << IDENTITY;
+        for (int t = 1; t < COUNT; t++) {
+            long b = transform(black, t);
+            int c = Long.compareUnsigned(b, bestBlack);
+            if (c > 0) {
+                continue;
+            }
+            long w = transform(white, t);
+            if (c == 0) {
+                c = Long.compareUnsigned(w, bestWhite);
+            }
+            if (c < 0) {
+                bestBlack = b;
+                bestWhite = w;
+                transforms = 1 << t;
+            } else if (c == 0) {
+                transforms |= 1 << t;
+            }
+        }
+        return transforms;
+    }
+
+    /**
+     * canonicalTransform returns the transform that maps the position to
+     * its canonical form.
+     */
+    public static int canonicalTransform(long black, long white) {
+        return Integer.numberOfTrailingZeros(canonicalTransforms(black, white));
+    }
+
+    /**
+     * canonicalHash returns the Zobrist hash of the canonical form of the
+     * position, which is the same for all 8 of its images.
+     */
+    public static long canonicalHash(long black, long white, boolean player1) {
+        int t = canonicalTransform(black, white);
+        return Zobrist.hash(transform(black, t), transform(white, t), player1);
+    }
+
+    /**
+     * canonicalMove returns the square in the canonical form that stands
+     * for move sq of the position. Moves that are the same up to the
+     * position's own symmetry get the same square.
+     *
+     * @param transforms the position's canonicalTransforms
+     */
+    public static int canonicalMove(int sq, int transforms) {
+        int best = 64;
+        for (int ts = transforms; ts != 0; ts &= ts - 1) {
+            best = Math.min(best, transformSquare(sq, Integer.numberOfTrailingZeros(ts)));
+        }
+        return best;
+    }
+
+    /**
+     * originalMoves is the inverse of canonicalMove: it returns, as a
+     * bitboard, every move of the position that a square of its canonical
+     * form stands for.
+     *
+     * @param transforms the position's canonicalTransforms
+     */
+    public static long originalMoves(int sq, int transforms) {
+        long moves = 0;
+        for (int ts = transforms; ts != 0; ts &= ts - 1) {
+            moves |= 1L << transformSquare(sq, inverse(Integer.numberOfTrailingZeros(ts)));
+        }
+        return moves;
+    }
+
+    // flipColumns mirrors every row: swap neighbouring bits, pairs, then nibbles
+    private static long flipColumns(long b) {
+        b = (b >>> 1) & 0x5555555555555555L | (b & 0x5555555555555555L) << 1;
+        b = (b >>> 2) & 0x3333333333333333L | (b & 0x3333333333333333L) << 2;
+        b = (b >>> 4) & 0x0F0F0F0F0F0F0F0FL | (b & 0x0F0F0F0F0F0F0F0FL) << 4;
+        return b;
+    }
+
+    // flipDiagonal swaps columns and rows: delta swaps of 4x4, 2x2 and 1x1 blocks
+    private static long flipDiagonal(long b) {
+        long t = 0x0F0F0F0F00000000L & (b ^ (b << 28));
+        b ^= t ^ (t >>> 28);
+        t = 0x3333000033330000L & (b ^ (b << 14));
+        b ^= t ^ (t >>> 14);
+        t = 0x5500550055005500L & (b ^ (b << 7));
+        b ^= t ^ (t >>> 7);
+        return b;
+    }
+}
@@ -0,0 +1,262 @@
+package org.cis1200.othello;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Tournament plays many games between two players without any user
+ * interface, to measure how much stronger one is than the other.
+ *
+ * Games run in parallel on a thread pool (one game per task); every
+ * thread gets its own instance of each player. The two players swap
+ * colours every game. Each result is written as soon as its game ends,
+ * with the running totals, and a summary with an Elo estimate follows at
+ * the end.
+ *
+ * A player that fails (an invalid move, or an exception from chooseMove)
+ * forfeits its game: the game is written as an error with the reason and
+ * counted as a loss for that player, so every game is in the totals.
+ *
+ * java org.cis1200.othello.Tournament first second games [threads] [out-file]
+ *
+ * Players are given as: random, greedy, search, search:budget-ms or
+ * search:budget-ms:threads. A pattern player is given the same way as
+ * search (pattern, pattern:budget-ms, ...) and evaluates with the pattern
+ * weights in PatternEvaluator.DEFAULT_FILE (or the standard ones). A
+ * Monte Carlo tree search player is given as mcts, mcts:budget-ms or
+ * mcts:budget-ms:threads.
+ */
+public class Tournament {
+
+    private final String firstName;
+    private final String secondName;
+    private final ThreadLocal<Player> first;
+    private final ThreadLocal<Player> second;
+    private final PrintStream out;
+    // every player created on the pool's threads, closed once the games are over
+    private final List<Player> players = new ArrayList<>();
+
+    // results from the first player's point of view
+    private int wins;
+    private int draws;
+    private int losses;
+    // games (included above) that ended because a player failed
+    private int forfeits;
+
+    /**
+     * Creates a tournament.
+     *
+     * @param firstName name of the first player (for the report)
+     * @param first creates the first player, once per thread
+     * @param secondName name of the second player
+     * @param second creates the second player, once per thread
+     * @param out where results are written
+     */
+    public Tournament(String firstName, Supplier<Player> first,
+                      String secondName, Supplier<Player> second, PrintStream out) {
+        this.firstName = firstName;
+        this.secondName = secondName;
+        this.first = ThreadLocal.withInitial(() -> created(first.get()));
+        this.second = ThreadLocal.withInitial(() -> created(second.get()));
+        this.out = out;
+    }
+
+    /**
+     * playGame plays one game on the Othello model and returns how it
+     * ended (as Othello.checkWinner does).
+     */
+    public static int playGame(Othello game, Player black, Player white) {
+        game.reset();
+        while (!game.getGameStatus()) {
+            Player player = game.getCurrentPlayer() ? black : white;
+            int move = player.chooseMove(game.toPosition());
+            if (move == SearchResult.PASS || !game.playTurn(move & 7, move >>> 3)) {
+                throw new IllegalStateException("Player made an invalid move: " + move);
+            }
+        }
+        return game.checkWinner();
+    }
+
+    /**
+     * run plays the given number of games on a pool of threads and blocks
+     * until they are all done.
+     */
+    public void run(int games, int threads) throws InterruptedException {
+        out.println("# " + firstName + " vs " + secondName + ", " + games + " games on "
+                + threads + " threads");
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for (int i = 0; i < games; i++) {
+            int number = i;
+            pool.execute(() -> play(number));
+        }
+        pool.shutdown();
+        pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        printSummary((System.nanoTime() - start) / 1e9);
+        synchronized (players) {
+            for (Player player : players) {
+                player.close();
+            }
+            players.clear();
+        }
+    }
+
+    private Player created(Player player) {
+        synchronized (players) {
+            players.add(player);
+        }
+        return player;
+    }
+
+    private void play(int number) {
+        // the first player has Black in even games, White in odd ones
+        boolean firstIsBlack = number % 2 == 0;
+        Othello game = new Othello();
+        int winner;
+        try {
+            winner = firstIsBlack
+                    ? playGame(game, first.get(), second.get())
+                    : playGame(game, second.get(), first.get());
+        } catch (RuntimeException e) {
+            // the game stops before the failed move, so the player to move is the one that failed
+            reportForfeit(number, firstIsBlack, game.getCurrentPlayer() == firstIsBlack, e);
+            return;
+        }
+        int firstDiscs = game.getPieceCount(firstIsBlack ? 1 : 2);
+        int secondDiscs = game.getPieceCount(firstIsBlack ? 2 : 1);
+        report(number, firstIsBlack, winner, firstDiscs, secondDiscs);
+    }
+
+    private synchronized void report(int number, boolean firstIsBlack, int winner,
+                                     int firstDiscs, int secondDiscs) {
+        String result;
+        if (winner == 3) {
+            draws++;
+            result = "1/2-1/2";
+        } else if ((winner == 1) == firstIsBlack) {
+            wins++;
+            result = "1-0";
+        } else {
+            losses++;
+            result = "0-1";
+        }
+        out.println("game " + number + " " + firstName + (firstIsBlack ? " (black) " : " (white) ")
+                + firstDiscs + "-" + secondDiscs + " " + result
+                + "  total +" + wins + " =" + draws + " -" + losses);
+        out.flush();
+    }
+
+    private synchronized void reportForfeit(int number, boolean firstIsBlack,
+                                            boolean firstFailed, RuntimeException e) {
+        forfeits++;
+        String result;
+        if (firstFailed) {
+            losses++;
+            result = "0-1";
+        } else {
+            wins++;
+            result = "1-0";
+        }
+        out.println("game " + number + " " + firstName + (firstIsBlack ? " (black) " : " (white) ")
+                + "error " + (firstFailed ? firstName : secondName) + " forfeits: " + e + " "
+                + result + "  total +" + wins + " =" + draws + " -" + losses);
+        out.flush();
+    }
+
+    private synchronized void printSummary(double seconds) {
+        int games = wins + draws + losses;
+        out.printf("# %s vs %s: +%d =%d -%d in %d games%n",
+                firstName, secondName, wins, draws, losses, games);
+        if (forfeits > 0) {
+            out.printf("# %d of them forfeited by a failing player (see the error lines)%n",
+                    forfeits);
+        }
+        if (games > 0) {
+            double score = (wins + draws / 2.0) / games;
+            // standard error of the mean per-game score
+            double variance = (wins * (1 - score) * (1 - score)
+                    + draws * (0.5 - score) * (0.5 - score)
+                    + losses * score * score) / games;
+            double margin = 1.96 * Math.sqrt(variance / games);
+            out.printf("# score %.1f%%, Elo %s (95%% CI %s to %s)%n", score * 100,
+                    elo(score), elo(score - margin), elo(score + margin));
+        }
+        out.printf("# %.1f s, %.1f games/sec%n", seconds, games / seconds);
+        out.println("# " + EngineStats.summary().replace("\n", "\n# "));
+        out.flush();
+    }
+
+    /**
+     * elo converts an expected score (0 to 1) into an Elo difference.
+     */
+    static String elo(double score) {
+        if (score <= 0) {
+            return "-inf";
+        } else if (score >= 1) {
+            return "+inf";
+        }
+        return String.format("%+.0f", -400 * Math.log10(1 / score - 1));
+    }
+
+    /**
+     * parsePlayer turns a player description into a factory for it.
+     *
+     * @throws IllegalArgumentException for an unknown description
+     * @throws IOException if a pattern player's weights cannot be read
+     */
+    public static Supplier<Player> parsePlayer(String spec) throws IOException {
+        String[] parts = spec.split(":");
+        switch (parts[0]) {
+            case "random":
+                return RandomPlayer::new;
+            case "greedy":
+                return GreedyPlayer::new;
+            case "search":
+            case "pattern":
+                long budget = parts.length > 1 ? Long.parseLong(parts[1])
+                        : ComputerPlayer.DEFAULT_BUDGET_MILLIS;
+                int threads = parts.length > 2 ? Integer.parseInt(parts[2]) : 1;
+                // the weights are only read, so every player can share them
+                PatternEvaluator evaluator = parts[0].equals("pattern")
+                        ? PatternEvaluator.loadDefault() : null;
+                return () -> {
+                    ComputerPlayer player = new ComputerPlayer(budget,
+                            ComputerPlayer.DEFAULT_TABLE_MEGABYTES, threads);
+                    player.setEvaluator(evaluator);
+                    return player;
+                };
+            case "mcts":
+                long mctsBudget = parts.length > 1 ? Long.parseLong(parts[1])
+                        : ComputerPlayer.DEFAULT_BUDGET_MILLIS;
+                int mctsThreads = parts.length > 2 ? Integer.parseInt(parts[2]) : 1;
+                return () -> new MonteCarloPlayer(mctsBudget, mctsThreads);
+            default:
+                throw new IllegalArgumentException("Unknown player: " + spec);
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 3) {
+            System.err.println("Usage: Tournament first second games [threads] [out-file]");
+            System.exit(2);
+        }
+        int games = Integer.parseInt(args[2]);
+        int threads = args.length > 3 ? Integer.parseInt(args[3])
+                : Runtime.getRuntime().availableProcessors();
+        PrintStream out = args.length > 4
+                ? new PrintStream(new FileOutputStream(args[4]), false, "UTF-8")
+                : System.out;
+        new Tournament(args[0], parsePlayer(args[0]), args[1], parsePlayer(args[1]), out)
+                .run(games, threads);
+        if (out != System.out) {
+            out.close();
+        }
+    }
+}
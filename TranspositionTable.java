@@ -0,0 +1,159 @@
+package org.cis1200.othello;
+
+/**
+ * TranspositionTable remembers search results by Zobrist hash, so a
+ * position reached again (by another move order, or in the next
+ * iteration of iterative deepening) does not have to be searched again.
+ *
+ * The table is a single preallocated long[] of fixed size: there is no
+ * object per entry, so memory use is exactly what was asked for and the
+ * garbage collector never has to look inside it.
+ *
+ * Layout: entries come in buckets of two, each entry is two longs:
+ * 1. key ^ data (so a torn write from another thread fails the check)
+ * 2. data: score (32 bits) | move (8) | depth (8) | bound (2) | age (8)
+ *
+ * Replacement: the first entry of a bucket is depth-preferred (only
+ * replaced by a deeper search, or once it is from an older search), the
+ * second always takes whatever the first one does not.
+ *
+ * Reads and writes never lock. Several threads may share one table; an
+ * entry torn by a concurrent write simply reads as a miss.
+ */
+public final class TranspositionTable {
+
+    /**
+     * Bounds: the stored score is exact, a lower bound (the search failed
+     * high) or an upper bound (it failed low).
+     */
+    public static final int EXACT = 1;
+    public static final int LOWER = 2;
+    public static final int UPPER = 3;
+
+    /**
+     * Returned by probe when the position is not in the table.
+     */
+    public static final long MISS = 0;
+
+    /**
+     * Move value stored when there is no best move.
+     */
+    public static final int NO_MOVE = 0xFF;
+
+    private static final int LONGS_PER_BUCKET = 4;
+    private static final int BYTES_PER_BUCKET = LONGS_PER_BUCKET * Long.BYTES;
+
+    private final long[] table;
+    private final int bucketMask;
+    private int age;
+
+    /**
+     * Creates a table using (at most) the given number of megabytes. The
+     * number of buckets is rounded down to a power of two.
+     */
+    public TranspositionTable(int megabytes) {
+        if (megabytes <= 0) {
+            throw new IllegalArgumentException("Table size must be positive");
+        }
+        long buckets = Long.highestOneBit((long) megabytes * 1024 * 1024 / BYTES_PER_BUCKET);
+        // a Java array holds a little under 2^31 elements, so at most 2^28 buckets
+        buckets = Math.min(buckets,
+                Long.highestOneBit((Integer.MAX_VALUE - 8) / LONGS_PER_BUCKET));
+        table = new long[(int) (buckets * LONGS_PER_BUCKET)];
+        bucketMask = (int) buckets - 1;
+    }
+
+    /**
+     * getCapacity returns the number of entries the table can hold.
+     */
+    public int getCapacity() {
+        return table.length / 2;
+    }
+
+    /**
+     * newSearch marks the start of a new search. Entries from earlier
+     * searches are kept for probing but are the first to be replaced.
+     */
+    public void newSearch() {
+        age = (age + 1) & 0xFF;
+    }
+
+    public void clear() {
+        java.util.Arrays.fill(table, 0);
+    }
+
+    private int bucket(long key) {
+        return ((int) (key ^ (key >>> 32)) & bucketMask) * LONGS_PER_BUCKET;
+    }
+
+    /**
+     * probe looks up a position.
+     *
+     * @return the packed entry (read it with score, move, depth and bound)
+     *         or MISS
+     */
+    public long probe(long key) {
+        int i = bucket(key);
+        long data = table[i + 1];
+        if ((table[i] ^ data) == key && data != MISS) {
+            return data;
+        }
+        data = table[i + 3];
+        if ((table[i + 2] ^ data) == key && data != MISS) {
+            return data;
+        }
+        return MISS;
+    }
+
+    /**
+     * store saves a search result.
+     *
+     * @param key Zobrist hash of the position
+     * @param depth depth the position was searched to
+     * @param bound EXACT, LOWER or UPPER
+     * @param score score from the point of view of the player to move
+     * @param move best move found, or -1 if none
+     */
+    public void store(long key, int depth, int bound, int score, int move) {
+        long data = ((long) score << 32)
+                | ((long) (move & 0xFF) << 24)
+                | ((long) Math.min(depth, 0xFF) << 16)
+                | ((long) bound << 8)
+                | age;
+        int i = bucket(key);
+        long first = table[i + 1];
+        boolean sameKey = (table[i] ^ first) == key;
+        // the depth-preferred slot takes the entry if it is at least as deep
+        if (sameKey || first == MISS || age(first) != age || depth >= depth(first)) {
+            table[i] = key ^ data;
+            table[i + 1] = data;
+        } else {
+            table[i + 2] = key ^ data;
+            table[i + 3] = data;
+        }
+    }
+
+    public static int score(long data) {
+        return (int) (data >> 32);
+    }
+
+    /**
+     * move returns the stored best move, or -1 if there was none.
+     */
+    public static int move(long data) {
+        int move = (int) (data >>> 24) & 0xFF;
+        return move == NO_MOVE ? -1 : move;
+    }
+
+    public static int depth(long data) {
+        return (int) (data >>> 16) & 0xFF;
+    }
+
+    public static int bound(long data) {
+        return (int) (data >>> 8) & 0x3;
+    }
+
+    private static int age(long data) {
+        return (int) data & 0xFF;
+    }
+}
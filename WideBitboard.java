@@ -0,0 +1,211 @@
+package org.cis1200.othello;
+
+import java.util.Arrays;
+
+/**
+ * WideBitboard is Bitboard for boards of other sizes than 8x8, where a
+ * side's discs no longer fit in one long.
+ *
+ * A side's discs are a bitset spread over an array of longs: the square
+ * at column c and row r is bit (r * size + c), which is bit (i & 63) of
+ * word (i >>> 6). The bits after the last square are always 0.
+ *
+ * Move generation works as in Bitboard, a whole direction at a time:
+ * moving one square is a shift of the bitset by 1, size, size - 1 or
+ * size + 1 (carrying bits from one word into the next), and the
+ * opponent's discs are masked with the inner columns for the shifts that
+ * could wrap into the next row. Only flips, which looks at the lines
+ * through one square, walks square by square.
+ *
+ * A WideBitboard holds the geometry of one board size and some scratch
+ * space, so it must not be shared between threads. Nothing is allocated
+ * once it has been created.
+ */
+public final class WideBitboard {
+
+    /**
+     * Smallest and largest board sizes (the size must also be even).
+     */
+    public static final int MIN_SIZE = 4;
+    public static final int MAX_SIZE = 32;
+
+    private final int size;
+    private final int words;
+    // the 8 directions as shifts (as in Bitboard) and as column and row steps
+    private final int[] shifts;
+    private static final int[] COLUMN_STEPS = {1, -1, 0, 0, 1, -1, -1, 1};
+    private static final int[] ROW_STEPS = {0, 0, 1, -1, 1, -1, 1, -1};
+    // every square, and every square off the first and last column
+    private final long[] board;
+    private final long[] inner;
+
+    // scratch bitsets for legalMoves
+    private final long[] empty;
+    private final long[] run;
+    private final long[] step;
+
+    /**
+     * Creates the bitboard geometry for a size x size board.
+     *
+     * @throws IllegalArgumentException if the size is odd or out of range
+     */
+    public WideBitboard(int size) {
+        if (size < MIN_SIZE || size > MAX_SIZE || size % 2 != 0) {
+            throw new IllegalArgumentException("Board size must be even and from " + MIN_SIZE
+                    + " to " + MAX_SIZE + ": " + size);
+        }
+        this.size = size;
+        this.words = (size * size + 63) >>> 6;
+        shifts = new int[] {1, -1, size, -size, size + 1, -size - 1, size - 1, -size + 1};
+        board = new long[words];
+        inner = new long[words];
+        for (int r = 0; r < size; r++) {
+            for (int c = 0; c < size; c++) {
+                set(board, r * size + c);
+                if (c > 0 && c < size - 1) {
+                    set(inner, r * size + c);
+                }
+            }
+        }
+        empty = new long[words];
+        run = new long[words];
+        step = new long[words];
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * newBitset returns an empty bitset for this board size.
+     */
+    public long[] newBitset() {
+        return new long[words];
+    }
+
+    /**
+     * start sets up the four centre discs of a new game.
+     */
+    public void start(long[] black, long[] white) {
+        Arrays.fill(black, 0);
+        Arrays.fill(white, 0);
+        int half = size / 2;
+        set(black, (half - 1) * size + half);
+        set(black, half * size + half - 1);
+        set(white, (half - 1) * size + half - 1);
+        set(white, half * size + half);
+    }
+
+    public static boolean get(long[] bits, int i) {
+        return (bits[i >>> 6] & 1L << i) != 0;
+    }
+
+    public static void set(long[] bits, int i) {
+        bits[i >>> 6] |= 1L << i;
+    }
+
+    public static int count(long[] bits) {
+        int count = 0;
+        for (long word : bits) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    public static boolean isEmpty(long[] bits) {
+        for (long word : bits) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * legalMoves computes the squares where the side owning `own` may play
+     * into moves.
+     */
+    public void legalMoves(long[] own, long[] opp, long[] moves) {
+        for (int w = 0; w < words; w++) {
+            empty[w] = ~(own[w] | opp[w]) & board[w];
+            moves[w] = 0;
+        }
+        for (int dir = 0; dir < 8; dir++) {
+            int s = shifts[dir];
+            long[] mask = COLUMN_STEPS[dir] == 0 ? board : inner;
+            shift(own, s, run);
+            long any = 0;
+            for (int w = 0; w < words; w++) {
+                run[w] &= opp[w] & mask[w];
+                any |= run[w];
+            }
+            // extend the runs of opponent discs until they stop growing
+            while (any != 0) {
+                shift(run, s, step);
+                any = 0;
+                for (int w = 0; w < words; w++) {
+                    long added = step[w] & opp[w] & mask[w] & ~run[w];
+                    run[w] |= added;
+                    any |= added;
+                }
+            }
+            shift(run, s, step);
+            for (int w = 0; w < words; w++) {
+                moves[w] |= step[w] & empty[w];
+            }
+        }
+    }
+
+    // shift moves every bit of from by s squares (s > 0 towards higher bits) into to
+    private void shift(long[] from, int s, long[] to) {
+        if (s > 0) {
+            for (int w = 0; w < words; w++) {
+                to[w] = from[w] << s | (w > 0 ? from[w - 1] >>> (64 - s) : 0);
+            }
+        } else {
+            for (int w = 0; w < words; w++) {
+                to[w] = from[w] >>> -s | (w + 1 < words ? from[w + 1] << (64 + s) : 0);
+            }
+        }
+    }
+
+    /**
+     * flips computes into flipped the opponent discs that would be flipped
+     * if the side owning `own` played on square sq, and returns how many
+     * there are (0 if the move is not valid).
+     */
+    public int flips(int sq, long[] own, long[] opp, long[] flipped) {
+        Arrays.fill(flipped, 0);
+        if (get(own, sq) || get(opp, sq)) {
+            return 0;
+        }
+        int c = sq % size;
+        int r = sq / size;
+        int count = 0;
+        for (int dir = 0; dir < 8; dir++) {
+            int dc = COLUMN_STEPS[dir];
+            int dr = ROW_STEPS[dir];
+            int x = c + dc;
+            int y = r + dr;
+            int length = 0;
+            // walk over the opponent discs in this direction
+            while (onBoard(x, y) && get(opp, y * size + x)) {
+                x += dc;
+                y += dr;
+                length++;
+            }
+            // the run only counts if it is closed by one of our own discs
+            if (length > 0 && onBoard(x, y) && get(own, y * size + x)) {
+                for (int i = 1; i <= length; i++) {
+                    set(flipped, (r + i * dr) * size + c + i * dc);
+                }
+                count += length;
+            }
+        }
+        return count;
+    }
+
+    private boolean onBoard(int c, int r) {
+        return c >= 0 && c < size && r >= 0 && r < size;
+    }
+}
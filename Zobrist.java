@@ -0,0 +1,97 @@
+package org.cis1200.othello;
+
+/**
+ * Zobrist hashing for Othello positions.
+ *
+ * Every (player, square) pair gets a fixed random 64-bit key, and so does
+ * "Player 2 to move". The hash of a position is the xor of the keys of
+ * every disc on the board (plus the side key if it is Player 2's turn).
+ *
+ * Because xor undoes itself, the hash can be updated as the game goes:
+ * 1. placing a disc xors in one key
+ * 2. flipping a disc xors out the old owner's key and in the new one's
+ * 3. handing the turn over xors the side key
+ *
+ * The keys come from a fixed seed, so hashes are the same in every run
+ * and can be stored in files (opening books, game databases).
+ */
+public final class Zobrist {
+
+    private static final long[] BLACK = new long[64];
+    private static final long[] WHITE = new long[64];
+    // BLACK[sq] ^ WHITE[sq]: the change when the disc on sq is flipped
+    private static final long[] FLIP = new long[64];
+
+    /**
+     * Key xor-ed in when it is Player 2's turn.
+     */
+    public static final long SIDE;
+
+    static {
+        // SplitMix64 with a fixed seed
+        long state = 0x4F7468656C6C6FL;
+        for (int sq = 0; sq < 64; sq++) {
+            state += 0x9E3779B97F4A7C15L;
+            BLACK[sq] = mix(state);
+            state += 0x9E3779B97F4A7C15L;
+            WHITE[sq] = mix(state);
+            FLIP[sq] = BLACK[sq] ^ WHITE[sq];
+        }
+        state += 0x9E3779B97F4A7C15L;
+        SIDE = mix(state);
+    }
+
+    private Zobrist() {
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * hash computes the hash of a position from scratch.
+     *
+     * @param black discs of Player 1
+     * @param white discs of Player 2
+     * @param player1 true if it is Player 1's turn
+     */
+    public static long hash(long black, long white, boolean player1) {
+        long h = player1 ? 0 : SIDE;
+        for (long b = black; b != 0; b &= b - 1) {
+            h ^= BLACK[Long.numberOfTrailingZeros(b)];
+        }
+        for (long w = white; w != 0; w &= w - 1) {
+            h ^= WHITE[Long.numberOfTrailingZeros(w)];
+        }
+        return h;
+    }
+
+    /**
+     * disc returns the key of a disc of the given player on square sq.
+     */
+    public static long disc(boolean player1, int sq) {
+        return player1 ? BLACK[sq] : WHITE[sq];
+    }
+
+    /**
+     * flips returns the change to the hash when every disc in `flipped`
+     * changes owner (in either direction).
+     */
+    public static long flips(long flipped) {
+        long h = 0;
+        for (long f = flipped; f != 0; f &= f - 1) {
+            h ^= FLIP[Long.numberOfTrailingZeros(f)];
+        }
+        return h;
+    }
+
+    /**
+     * move returns the change to the hash when the given player places a
+     * disc on sq, flips `flipped` and hands the turn to the opponent.
+     */
+    public static long move(boolean player1, int sq, long flipped) {
+        return disc(player1, sq) ^ flips(flipped) ^ SIDE;
+    }
+}